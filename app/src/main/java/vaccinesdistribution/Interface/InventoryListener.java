@@ -0,0 +1,11 @@
+package vaccinesdistribution.Interface;
+
+public interface InventoryListener {
+    /**
+     * Called every time the stock held at a location changes
+     * @param item the item whose stock changed, usually a warehouse
+     * @param expirationDate the expiration date of the stock that changed
+     * @param delta the quantity added (positive) or removed (negative)
+     */
+    void onStockChanged(Locatable item, int expirationDate, int delta);
+}
@@ -1,7 +1,10 @@
 package vaccinesdistribution.Interface;
 
+import vaccinesdistribution.Model.Product;
+
 public interface Perishable {
     int getId();
+    Product getProduct();
     int getExpirationDate();
     void setExpired();
     boolean isExpired();
@@ -9,4 +12,5 @@ public interface Perishable {
     int getStorageId();
     PositionedObject getStoreIdentifier();
     Perishable dispatch(int quantity);
+    Perishable copy();
 }
@@ -1,6 +1,7 @@
 package vaccinesdistribution.Interface;
 
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import vaccinesdistribution.Util.Point;
 
@@ -33,4 +34,29 @@ public interface SpatialCollection<E extends Locatable> {
     List<E> getKClosestItems(Point p, int k);
 
     void setItemsFromList(List<E> items);
+
+    /**
+     * Replaces the given element, compared by identity, with another one
+     * located at the same point. If the collection does not contain the
+     * element, it is unchanged.
+     * @param old the element currently in the collection
+     * @param replacement the element to store in its place
+     */
+    void replace(E old, E replacement);
+
+    /**
+     * Replaces every element of this collection with the result of applying
+     * the operator to it. The operator must not change element locations.
+     * @param operator the operator to apply to each element
+     */
+    void replaceAll(UnaryOperator<E> operator);
+
+    /**
+     * Returns an independent copy of this collection in constant time. The
+     * copy and this collection share their storage until either of them is
+     * modified, at which point the modified one copies it (copy-on-write).
+     * Elements themselves are shared, not copied.
+     * @return a copy of this collection
+     */
+    SpatialCollection<E> fork();
 }
@@ -0,0 +1,15 @@
+package vaccinesdistribution.Interface;
+
+import java.io.IOException;
+import java.util.List;
+
+import vaccinesdistribution.Model.Warehouse;
+
+public interface WarehouseSource {
+    /**
+     * Loads the initial warehouses of a distributor, with their batches
+     * @return the warehouses
+     * @throws IOException if the warehouses cannot be read
+     */
+    List<Warehouse> loadWarehouses() throws IOException;
+}
@@ -3,41 +3,59 @@ package vaccinesdistribution.Model;
 import java.util.Map;
 import java.util.List;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import vaccinesdistribution.Interface.Perishable;
 import vaccinesdistribution.Interface.PositionedObject;
 import vaccinesdistribution.Util.Point;
 
 public class Order {
-    private static int idCounter = 0;
+    private static final AtomicInteger idCounter = new AtomicInteger();
 
     private int id;
     private int quantity;
+    private Product product;
     private Point deliveryLocation;
     private boolean isDispatched = false;
     private boolean isRejected = false;
     private int processingDate = -1;
+    private long placementTime = 0;
+    private OrderPriority priority = OrderPriority.ROUTINE;
+    private long deadline = Long.MAX_VALUE;
     private List<Perishable> dispatchedBatches;
     private Map<PositionedObject, Integer> dispatchers = new HashMap<>();
 
     public Order(int quantity, Point deliveryLocation) {
-        this.id = idCounter++;
+        this(Product.DEFAULT, quantity, deliveryLocation);
+    }
+
+    public Order(Product product, int quantity, Point deliveryLocation) {
+        this.id = idCounter.getAndIncrement();
+        this.product = product;
         this.quantity = quantity;
         this.deliveryLocation = deliveryLocation;
     }
 
     public Order(Order order, int quantity) {
         this.id = order.getId();
+        this.product = order.getProduct();
         this.quantity = quantity;
         this.deliveryLocation = order.getDeliveryLocation();
         this.isDispatched = order.isDispatched();
         this.isRejected = order.isRejected();
+        this.placementTime = order.getPlacementTime();
+        this.priority = order.getPriority();
+        this.deadline = order.getDeadline();
     }
 
     public int getId() {
         return id;
     }
 
+    public Product getProduct() {
+        return product;
+    }
+
     public int getQuantity() {
         return quantity;
     }
@@ -79,6 +97,37 @@ public class Order {
         return processingDate;
     }
 
+    /**
+     * Returns the simulation time, in minutes, at which the order was placed
+     */
+    public long getPlacementTime() {
+        return placementTime;
+    }
+
+    public void setPlacementTime(long placementTime) {
+        this.placementTime = placementTime;
+    }
+
+    public OrderPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(OrderPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the simulation time, in minutes, by which the order should
+     * be dispatched
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
     private void computeDispatchers() {
         PositionedObject identifier;
         for (Perishable batch : dispatchedBatches) {
@@ -93,6 +142,8 @@ public class Order {
     public String toString() {
         String message = "Order{" +
             "id=" + id +
+            ", product=" + product +
+            ", priority=" + priority +
             ", quantity=" + quantity +
             ", deliveryLocation=" + deliveryLocation +
             ", isDispatched=" + isDispatched +
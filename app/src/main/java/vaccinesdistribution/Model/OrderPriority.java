@@ -0,0 +1,21 @@
+package vaccinesdistribution.Model;
+
+/**
+ * Priority lane of an order, with the default time, in minutes, within
+ * which orders of the lane should be dispatched after being placed
+ */
+public enum OrderPriority {
+    URGENT(60),
+    HIGH(6 * 60),
+    ROUTINE(24 * 60);
+
+    private final long targetDelay;
+
+    OrderPriority(long targetDelay) {
+        this.targetDelay = targetDelay;
+    }
+
+    public long getTargetDelay() {
+        return targetDelay;
+    }
+}
@@ -0,0 +1,28 @@
+package vaccinesdistribution.Model;
+
+import vaccinesdistribution.Util.Point;
+
+/**
+ * State of an order when a distributor snapshot was published. Unlike the
+ * order itself it never changes, so it can be read from any thread.
+ */
+public record OrderStatus(
+    int orderId,
+    Product product,
+    OrderPriority priority,
+    int quantity,
+    Point deliveryLocation,
+    boolean dispatched,
+    boolean rejected
+) {
+    public OrderStatus(Order order) {
+        this(
+            order.getId(),
+            order.getProduct(),
+            order.getPriority(),
+            order.getQuantity(),
+            order.getDeliveryLocation(),
+            order.isDispatched(),
+            order.isRejected());
+    }
+}
@@ -0,0 +1,36 @@
+package vaccinesdistribution.Model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type of vaccine held by batches and requested by orders. Products are
+ * interned by name, so they can be compared by identity.
+ */
+public final class Product {
+    private static final Map<String, Product> products = new ConcurrentHashMap<>();
+
+    public static final Product DEFAULT = of("vaccine");
+
+    private final String name;
+
+    private Product(String name) {
+        this.name = name;
+    }
+
+    public static Product of(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Product name cannot be empty");
+        }
+        return products.computeIfAbsent(name, Product::new);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
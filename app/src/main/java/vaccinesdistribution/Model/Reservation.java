@@ -0,0 +1,8 @@
+package vaccinesdistribution.Model;
+
+/**
+ * Quantity of a product set aside in a warehouse by a two-phase dispatch
+ * plan. It is only valid while no vaccine left the warehouse since it was
+ * made, i.e. while the warehouse version is the one it was made at.
+ */
+public record Reservation(Warehouse warehouse, Product product, int quantity, long version) {}
@@ -1,25 +1,34 @@
 package vaccinesdistribution.Model;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import vaccinesdistribution.Interface.Perishable;
 import vaccinesdistribution.Interface.PositionedObject;
 
 public class VaccineBatch implements Perishable, Comparable<Perishable> {
-    private static int idCounter = 0;
+    private static final AtomicInteger idCounter = new AtomicInteger();
 
     private int id;
+    private Product product;
     private int availableVaccines;
     private int perishDate;
     private boolean expired = false;
     private PositionedObject storeIdentifier;
     
     public VaccineBatch(int quantity, int perishDate) {
-        this.id = idCounter++;
+        this(Product.DEFAULT, quantity, perishDate);
+    }
+
+    public VaccineBatch(Product product, int quantity, int perishDate) {
+        this.id = idCounter.getAndIncrement();
+        this.product = product;
         this.availableVaccines = quantity;
         this.perishDate = perishDate;
     }
 
     public VaccineBatch(VaccineBatch batch, int quantity) {
         this.id = batch.getId();
+        this.product = batch.getProduct();
         this.availableVaccines = quantity;
         this.perishDate = batch.getExpirationDate();
         this.expired = batch.isExpired();
@@ -35,6 +44,11 @@ public class VaccineBatch implements Perishable, Comparable<Perishable> {
         return storeIdentifier;
     }
 
+    @Override
+    public Product getProduct() {
+        return product;
+    }
+
     @Override
     public int getExpirationDate() {
         return perishDate;
@@ -62,6 +76,11 @@ public class VaccineBatch implements Perishable, Comparable<Perishable> {
         return new VaccineBatch(this, quantity);
     }
 
+    @Override
+    public Perishable copy() {
+        return new VaccineBatch(this, availableVaccines);
+    }
+
     @Override
     public int getId() {
         return id;
@@ -75,7 +94,8 @@ public class VaccineBatch implements Perishable, Comparable<Perishable> {
     @Override
     public String toString() {
         return "VaccineBatch{" +
-                "availableVaccines=" + availableVaccines +
+                "product=" + product +
+                ", availableVaccines=" + availableVaccines +
                 ", perishDate=" + perishDate +
                 ", expired=" + expired +
                 ", storedAt=" + storeIdentifier +
@@ -93,6 +113,7 @@ public class VaccineBatch implements Perishable, Comparable<Perishable> {
             && Integer.valueOf(getQuantity()).equals(that.getQuantity())
             && Integer.valueOf(getStorageId()).equals(that.getStorageId())
             && Integer.valueOf(getId()).equals(that.getId())
+            && getProduct() == that.getProduct()
         );
     }
 
@@ -1,12 +1,16 @@
 package vaccinesdistribution.Model;
 
+import java.util.Map;
 import java.util.List;
+import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import vaccinesdistribution.Interface.InventoryListener;
 import vaccinesdistribution.Interface.Perishable;
 import vaccinesdistribution.Interface.Locatable;
 import vaccinesdistribution.Interface.PositionedObject;
@@ -17,8 +21,10 @@ public class Warehouse implements Locatable {
     
     private int availableBatches;
     private PositionedObject identifier;
-    private List<Perishable> expiredBatches = new ArrayList<>();
-    private PriorityQueue<Perishable> vaccineBatches = new PriorityQueue<>();
+    // One queue of batches per product, ordered by expiration date
+    private Map<Product, PriorityQueue<Perishable>> vaccineBatches = new HashMap<>();
+    private Map<Product, Integer> availableBatchesByProduct = new HashMap<>();
+    private InventoryListener inventoryListener;
 
     @Override
     public String toString() {
@@ -34,23 +40,102 @@ public class Warehouse implements Locatable {
         return availableBatches;
     }
 
+    public int getAvailableBatches(Product product) {
+        return availableBatchesByProduct.getOrDefault(product, 0);
+    }
+
+    /**
+     * Returns the products this warehouse has ever received
+     */
+    public Set<Product> getProducts() {
+        return vaccineBatches.keySet();
+    }
+
     public PositionedObject getIdentifier() {
         return identifier;
     }
 
+    public void setInventoryListener(InventoryListener inventoryListener) {
+        this.inventoryListener = inventoryListener;
+    }
+
+    /**
+     * Reports every batch with vaccines left in this warehouse to the
+     * listener as a stock increase
+     * @param listener the listener to report to
+     */
+    public void reportInventory(InventoryListener listener) {
+        for (PriorityQueue<Perishable> batches : vaccineBatches.values()) {
+            for (Perishable batch : batches) {
+                if (batch.isExpired() || batch.getQuantity() <= 0) continue;
+                listener.onStockChanged(this, batch.getExpirationDate(), batch.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Returns the batch with the closest expiration date among all products
+     */
     public Perishable getTopPriorityObject() {
-        return vaccineBatches.peek();
+        Perishable topPriorityObject = null;
+        Perishable batch;
+        for (PriorityQueue<Perishable> batches : vaccineBatches.values()) {
+            batch = batches.peek();
+            if (batch == null) continue;
+            if (topPriorityObject == null || batch.getExpirationDate() < topPriorityObject.getExpirationDate()) {
+                topPriorityObject = batch;
+            }
+        }
+        return topPriorityObject;
+    }
+
+    public Perishable getTopPriorityObject(Product product) {
+        PriorityQueue<Perishable> batches = vaccineBatches.get(product);
+        return batches == null ? null : batches.peek();
+    }
+
+    public boolean hasExpiredObjects(int currentDate) {
+        Perishable batch = getTopPriorityObject();
+        return batch != null && batch.getExpirationDate() <= currentDate;
+    }
+
+    /**
+     * Returns a warehouse with the same identifier and an independent copy
+     * of this warehouse's batches, so that it can be modified without
+     * affecting this one. The inventory listener is not copied.
+     * @return a deep copy of this warehouse
+     */
+    public Warehouse copy() {
+        Warehouse copy = new Warehouse(identifier);
+        copy.availableBatches = availableBatches;
+        copy.availableBatchesByProduct = new HashMap<>(availableBatchesByProduct);
+
+        List<Perishable> batches;
+        for (Map.Entry<Product, PriorityQueue<Perishable>> entry : vaccineBatches.entrySet()) {
+            batches = new ArrayList<>(entry.getValue().size());
+            for (Perishable batch : entry.getValue()) {
+                batches.add(batch.copy());
+            }
+            copy.vaccineBatches.put(entry.getKey(), new PriorityQueue<>(batches));
+        }
+        return copy;
     }
 
     public List<Perishable> dispatch(int quantity) {
+        return dispatch(Product.DEFAULT, quantity);
+    }
+
+    public List<Perishable> dispatch(Product product, int quantity) {
         Perishable batch;
         Perishable dispatchedBatch;
         List<Perishable> dispatchedBatches = new ArrayList<>();
+        PriorityQueue<Perishable> batches = vaccineBatches.get(product);
+        if (batches == null) return dispatchedBatches;
         
-        while (quantity > 0 && !vaccineBatches.isEmpty()) {
-            batch = getTopPriorityObject();
+        while (quantity > 0 && !batches.isEmpty()) {
+            batch = batches.peek();
             if (batch.isExpired()) {
-                vaccineBatches.poll();
+                batches.poll();
                 continue;
             };
 
@@ -58,33 +143,45 @@ public class Warehouse implements Locatable {
             dispatchedBatches.add(dispatchedBatch);
 
             quantity -= dispatchedBatch.getQuantity();
-            availableBatches -= dispatchedBatch.getQuantity();
+            updateAvailableBatches(product, -dispatchedBatch.getQuantity());
+            notifyStockChanged(batch.getExpirationDate(), -dispatchedBatch.getQuantity());
             if (batch.getQuantity() <= 0) {
-                vaccineBatches.poll();
+                batches.poll();
             }
         }
 
         return dispatchedBatches;
     }
 
-    public void disposeExpiredObjects(int currentDate){
+    /**
+     * Removes the batches expiring on or before the given date
+     * @param currentDate the current date
+     * @return the batches that expired with vaccines left, to be recorded
+     *     by the caller
+     */
+    public List<Perishable> disposeExpiredObjects(int currentDate){
         Perishable batch;
-        while (true) {
-            batch = getTopPriorityObject();
-            if (batch == null || batch.getExpirationDate() > currentDate) break;
-
-            if (batch.getQuantity() <= 0) {
-                vaccineBatches.poll();
+        List<Perishable> expiredBatches = new ArrayList<>();
+        for (PriorityQueue<Perishable> batches : vaccineBatches.values()) {
+            while (true) {
+                batch = batches.peek();
+                if (batch == null || batch.getExpirationDate() > currentDate) break;
+
+                if (batch.getQuantity() <= 0) {
+                    batches.poll();
+                    continue;
+                }
+
+                batch.setExpired();
+                updateAvailableBatches(batch.getProduct(), -batch.getQuantity());
+                notifyStockChanged(batch.getExpirationDate(), -batch.getQuantity());
+                expiredBatches.add(batch);
+                batches.poll();
+                logger.info("Batch expired successfully {}, current date: {}", batch, currentDate);
                 continue;
             }
-
-            batch.setExpired();
-            availableBatches -= batch.getQuantity();
-            expiredBatches.add(batch);
-            vaccineBatches.poll();
-            logger.info("Batch expired successfully", batch, "current date: " + currentDate);
-            continue;
         }
+        return expiredBatches;
     }
 
     public void registerPerishableBatch(Perishable batch) {
@@ -92,8 +189,19 @@ public class Warehouse implements Locatable {
             ((VaccineBatch) batch).sendToStore(identifier);
         }
 
-        availableBatches += batch.getQuantity();
-        vaccineBatches.add(batch);
+        updateAvailableBatches(batch.getProduct(), batch.getQuantity());
+        vaccineBatches.computeIfAbsent(batch.getProduct(), product -> new PriorityQueue<>()).add(batch);
+        notifyStockChanged(batch.getExpirationDate(), batch.getQuantity());
+    }
+
+    private void updateAvailableBatches(Product product, int delta) {
+        availableBatches += delta;
+        availableBatchesByProduct.merge(product, delta, Integer::sum);
+    }
+
+    private void notifyStockChanged(int expirationDate, int delta) {
+        if (inventoryListener == null) return;
+        inventoryListener.onStockChanged(this, expirationDate, delta);
     }
 
     @Override
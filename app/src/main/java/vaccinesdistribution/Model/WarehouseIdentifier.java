@@ -1,19 +1,20 @@
 package vaccinesdistribution.Model;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import vaccinesdistribution.Util.Point;
 import vaccinesdistribution.Interface.PositionedObject;
 
 public class WarehouseIdentifier implements PositionedObject {
-    private static int idCounter = 0;
+    private static final AtomicInteger idCounter = new AtomicInteger();
     private int id;
     private String name;
     private Point location;
     
 
     public WarehouseIdentifier(String name, Point location) {
-        this.id = idCounter++;
+        this.id = idCounter.getAndIncrement();
         this.name = name;
         this.location = location;
     }
@@ -0,0 +1,107 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import vaccinesdistribution.Interface.Perishable;
+import vaccinesdistribution.Interface.SpatialCollection;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Util.DemandHeatmap;
+import vaccinesdistribution.Util.Point;
+
+/**
+ * Places incoming batches where recent demand is not covered by the stock
+ * already stored nearby.
+ *
+ * The demand of every heatmap cell is assigned to the warehouse closest to
+ * it. Each of those warehouses should hold a share of the total stock
+ * proportional to the demand it serves; batches go one by one to the
+ * warehouse with the largest deficit with respect to that share. Orders are
+ * then more likely to be fully served by their closest warehouses, which
+ * reduces the number of warehouses touched and of neighbourhood doublings
+ * per order. Without recorded demand batches are placed at random.
+ */
+public class DemandAwareReplenishment implements ReplenishmentStrategy {
+    public static final int DEFAULT_CELL_SIZE = 50;
+    public static final double DEFAULT_DECAY_FACTOR = 0.7;
+
+    private final DemandHeatmap heatmap;
+    private final RandomReplenishment fallback = new RandomReplenishment();
+
+    public DemandAwareReplenishment() {
+        this(new DemandHeatmap(DEFAULT_CELL_SIZE, DEFAULT_DECAY_FACTOR));
+    }
+
+    public DemandAwareReplenishment(DemandHeatmap heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    public DemandHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    @Override
+    public void recordDemand(Point deliveryLocation, int quantity) {
+        heatmap.record(deliveryLocation, quantity);
+    }
+
+    @Override
+    public void finishDay() {
+        heatmap.decay();
+    }
+
+    @Override
+    public List<Warehouse> place(List<? extends Perishable> batches, SpatialCollection<Warehouse> stores) {
+        if (heatmap.isEmpty()) return fallback.place(batches, stores);
+
+        // Warehouses are keyed by id since forks replace them with copies
+        Map<Integer, Warehouse> servingWarehouses = new HashMap<>();
+        Map<Integer, Double> servedDemand = new HashMap<>();
+        heatmap.forEachCell((center, demand) -> {
+            Warehouse closest = stores.getKClosestItems(center, 1).get(0);
+            int id = closest.getIdentifier().getId();
+            servingWarehouses.put(id, closest);
+            servedDemand.merge(id, demand, Double::sum);
+        });
+
+        long totalStock = 0;
+        for (Warehouse warehouse : stores.getItems()) {
+            totalStock += warehouse.getAvailableBatches();
+        }
+        for (Perishable batch : batches) {
+            totalStock += batch.getQuantity();
+        }
+
+        double totalDemand = heatmap.getTotalDemand();
+        PriorityQueue<Deficit> deficits = new PriorityQueue<>((a, b) -> Double.compare(b.amount(), a.amount()));
+        for (Map.Entry<Integer, Warehouse> entry : servingWarehouses.entrySet()) {
+            Warehouse warehouse = entry.getValue();
+            double target = totalStock * servedDemand.get(entry.getKey()) / totalDemand;
+            deficits.add(new Deficit(warehouse, target - warehouse.getAvailableBatches()));
+        }
+
+        Deficit largest;
+        List<Warehouse> targets = new ArrayList<>(batches.size());
+        for (Perishable batch : batches) {
+            largest = deficits.poll();
+            targets.add(largest.warehouse());
+            deficits.add(new Deficit(largest.warehouse(), largest.amount() - batch.getQuantity()));
+        }
+        return targets;
+    }
+
+    @Override
+    public String getName() {
+        return "demand-aware";
+    }
+
+    @Override
+    public ReplenishmentStrategy fork() {
+        return new DemandAwareReplenishment(new DemandHeatmap(heatmap));
+    }
+
+    private record Deficit(Warehouse warehouse, double amount) {}
+}
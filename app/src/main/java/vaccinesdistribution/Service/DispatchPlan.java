@@ -0,0 +1,118 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.Reservation;
+import vaccinesdistribution.Model.Warehouse;
+
+/**
+ * Reservations made to serve an order, built by the planning phase of a
+ * two-phase dispatch without modifying any warehouse. Besides its
+ * reservations the plan records the version of every warehouse it looked
+ * at and whether reservations of other plans kept it from reserving what
+ * it wanted, so it can tell whether it was made against the same stock as
+ * the serial dispatch would use.
+ */
+public class DispatchPlan {
+    private final Order order;
+    private final ReservationTable table;
+    private final List<Reservation> reservations = new ArrayList<>();
+    private final List<Observation> observations = new ArrayList<>();
+    private boolean contended;
+    private int reservedQuantity;
+    private int neighbourQueries;
+
+    DispatchPlan(Order order, ReservationTable table) {
+        this.order = order;
+        this.table = table;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+
+    public int getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public int getMissingQuantity() {
+        return order.getQuantity() - reservedQuantity;
+    }
+
+    public int getNeighbourQueries() {
+        return neighbourQueries;
+    }
+
+    public boolean isComplete() {
+        return reservedQuantity == order.getQuantity();
+    }
+
+    /**
+     * Returns whether the plan is what planning it now, with no other plan
+     * holding reservations, would give: no other plan got in its way and
+     * none of the warehouses it looked at changed since
+     */
+    public boolean isValid() {
+        if (contended) return false;
+        for (Observation observation : observations) {
+            if (table.getVersion(observation.warehouse()) != observation.version()) return false;
+        }
+        for (Reservation reservation : reservations) {
+            if (!table.isValid(reservation)) return false;
+        }
+        return true;
+    }
+
+    boolean hasReservation(Warehouse warehouse) {
+        for (Reservation reservation : reservations) {
+            if (reservation.warehouse() == warehouse) return true;
+        }
+        return false;
+    }
+
+    void addReservation(Reservation reservation) {
+        reservations.add(reservation);
+        reservedQuantity += reservation.quantity();
+    }
+
+    void neighboursQueried() {
+        neighbourQueries++;
+    }
+
+    void observe(Warehouse warehouse) {
+        observations.add(new Observation(warehouse, table.getVersion(warehouse)));
+    }
+
+    void contended() {
+        contended = true;
+    }
+
+    /**
+     * Gives back every reservation of the plan
+     */
+    void release() {
+        for (Reservation reservation : reservations) {
+            table.release(reservation);
+        }
+        reservations.clear();
+        reservedQuantity = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchPlan{" +
+            "order=" + order.getId() +
+            ", reservedQuantity=" + reservedQuantity +
+            ", reservations=" + reservations.size() +
+            ", contended=" + contended +
+            '}';
+    }
+
+    private record Observation(Warehouse warehouse, long version) {}
+}
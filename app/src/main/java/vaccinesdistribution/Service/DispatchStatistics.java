@@ -0,0 +1,46 @@
+package vaccinesdistribution.Service;
+
+/**
+ * Counters describing how much work dispatching orders takes: how many
+ * warehouses each order is served from and how many k closest stores
+ * queries it needs.
+ */
+public class DispatchStatistics {
+    private long orders;
+    private long warehousesTouched;
+    private long neighbourQueries;
+
+    public void recordOrder(int warehousesTouched, int neighbourQueries) {
+        recordOrders(1, warehousesTouched, neighbourQueries);
+    }
+
+    /**
+     * Records the work done to dispatch several orders together
+     */
+    public void recordOrders(int orders, int warehousesTouched, int neighbourQueries) {
+        this.orders += orders;
+        this.warehousesTouched += warehousesTouched;
+        this.neighbourQueries += neighbourQueries;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public double getMeanWarehousesTouched() {
+        return orders == 0 ? 0 : (double) warehousesTouched / orders;
+    }
+
+    public double getMeanNeighbourQueries() {
+        return orders == 0 ? 0 : (double) neighbourQueries / orders;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchStatistics{" +
+                "orders=" + orders +
+                ", meanWarehousesTouched=" + getMeanWarehousesTouched() +
+                ", meanNeighbourQueries=" + getMeanNeighbourQueries() +
+                "}";
+    }
+}
@@ -0,0 +1,164 @@
+package vaccinesdistribution.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fixed-size binary record of the decisions taken while dispatching orders.
+ *
+ * Records are written into a preallocated ring buffer of ints, so tracing
+ * never allocates on the dispatch path and the oldest records are
+ * overwritten once the buffer is full. When tracing is disabled every
+ * record method returns after a single branch.
+ *
+ * Each record has {@link #RECORD_INTS} ints: type, day, order id and three
+ * type-dependent arguments. Use {@link #writeTo(Path)} to save the buffer
+ * and {@link DispatchTraceDump} to render it as text.
+ */
+public class DispatchTrace {
+    public static final int ORDER_STARTED = 1;        // args: quantity
+    public static final int NEIGHBOURS_QUERIED = 2;  // args: k, stores found
+    public static final int WAREHOUSE_CONSIDERED = 3; // args: warehouse id, top priority expiration date, available batches
+    public static final int QUANTITY_TAKEN = 4;       // args: warehouse id, quantity
+    public static final int ORDER_FINISHED = 5;       // args: status, missing quantity
+
+    public static final int STATUS_DISPATCHED = 1;
+    public static final int STATUS_REJECTED = 2;
+
+    static final int RECORD_INTS = 6;
+    static final int FILE_MAGIC = 0x56445452; // "VDTR"
+    static final int FILE_VERSION = 1;
+
+    private final int[] records;
+    private final int mask;
+    private long written;
+    private boolean enabled;
+
+    /**
+     * Creates a disabled trace able to hold the last {@code capacity}
+     * records. The capacity is rounded up to the next power of two.
+     * @param capacity minimum number of records kept in the buffer
+     */
+    public DispatchTrace(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Trace capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+
+        this.records = new int[size * RECORD_INTS];
+        this.mask = size - 1;
+        this.written = 0;
+        this.enabled = false;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enable() {
+        enabled = true;
+    }
+
+    public void disable() {
+        enabled = false;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns the number of records currently held in the buffer
+     * @return the number of records available for dumping
+     */
+    public int size() {
+        return (int) Math.min(written, capacity());
+    }
+
+    /**
+     * Returns the total number of records written since the last clear,
+     * including the ones already overwritten
+     * @return the number of records ever written
+     */
+    public long getWrittenRecords() {
+        return written;
+    }
+
+    public void clear() {
+        written = 0;
+    }
+
+    public void orderStarted(int day, int orderId, int quantity) {
+        if (!enabled) return;
+        write(ORDER_STARTED, day, orderId, quantity, 0, 0);
+    }
+
+    public void neighboursQueried(int day, int orderId, int k, int storesFound) {
+        if (!enabled) return;
+        write(NEIGHBOURS_QUERIED, day, orderId, k, storesFound, 0);
+    }
+
+    public void warehouseConsidered(int day, int orderId, int warehouseId, int expirationDate, int availableBatches) {
+        if (!enabled) return;
+        write(WAREHOUSE_CONSIDERED, day, orderId, warehouseId, expirationDate, availableBatches);
+    }
+
+    public void quantityTaken(int day, int orderId, int warehouseId, int quantity) {
+        if (!enabled) return;
+        write(QUANTITY_TAKEN, day, orderId, warehouseId, quantity, 0);
+    }
+
+    public void orderFinished(int day, int orderId, int status, int missingQuantity) {
+        if (!enabled) return;
+        write(ORDER_FINISHED, day, orderId, status, missingQuantity, 0);
+    }
+
+    private void write(int type, int day, int orderId, int arg0, int arg1, int arg2) {
+        int base = (int) (written & mask) * RECORD_INTS;
+        records[base] = type;
+        records[base + 1] = day;
+        records[base + 2] = orderId;
+        records[base + 3] = arg0;
+        records[base + 4] = arg1;
+        records[base + 5] = arg2;
+        written++;
+    }
+
+    /**
+     * Writes the records held in the buffer, oldest first, to the given
+     * file. The file starts with a header of magic number, format version,
+     * number of the first record and number of records.
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            writeTo(out);
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        int count = size();
+        long first = written - count;
+
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(FILE_VERSION);
+        data.writeLong(first);
+        data.writeInt(count);
+
+        int base;
+        for (long sequence = first; sequence < written; sequence++) {
+            base = (int) (sequence & mask) * RECORD_INTS;
+            for (int i = 0; i < RECORD_INTS; i++) {
+                data.writeInt(records[base + i]);
+            }
+        }
+        data.flush();
+    }
+}
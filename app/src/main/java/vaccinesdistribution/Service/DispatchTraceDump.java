@@ -0,0 +1,80 @@
+package vaccinesdistribution.Service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Offline tool that renders a file written by {@link DispatchTrace#writeTo(Path)}
+ * as one line of text per record.
+ *
+ * Usage: {@code DispatchTraceDump <trace file>}
+ */
+public class DispatchTraceDump {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DispatchTraceDump <trace file>");
+            System.exit(1);
+        }
+
+        try (InputStream in = Files.newInputStream(Path.of(args[0]))) {
+            dump(in, System.out);
+        }
+    }
+
+    public static void dump(InputStream in, PrintStream out) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+
+        if (data.readInt() != DispatchTrace.FILE_MAGIC) {
+            throw new IOException("Not a dispatch trace file");
+        }
+        int version = data.readInt();
+        if (version != DispatchTrace.FILE_VERSION) {
+            throw new IOException("Unsupported dispatch trace version " + version);
+        }
+
+        long sequence = data.readLong();
+        int count = data.readInt();
+        int[] record = new int[DispatchTrace.RECORD_INTS];
+        for (int i = 0; i < count; i++, sequence++) {
+            for (int j = 0; j < record.length; j++) {
+                record[j] = data.readInt();
+            }
+            out.println(render(sequence, record));
+        }
+    }
+
+    static String render(long sequence, int[] record) {
+        String prefix = "#" + sequence + " day=" + record[1] + " order=" + record[2] + " ";
+        switch (record[0]) {
+            case DispatchTrace.ORDER_STARTED:
+                return prefix + "ORDER_STARTED quantity=" + record[3];
+            case DispatchTrace.NEIGHBOURS_QUERIED:
+                return prefix + "NEIGHBOURS_QUERIED k=" + record[3] + " found=" + record[4];
+            case DispatchTrace.WAREHOUSE_CONSIDERED:
+                return prefix + "WAREHOUSE_CONSIDERED warehouse=" + record[3]
+                        + " topExpiration=" + record[4] + " available=" + record[5];
+            case DispatchTrace.QUANTITY_TAKEN:
+                return prefix + "QUANTITY_TAKEN warehouse=" + record[3] + " quantity=" + record[4];
+            case DispatchTrace.ORDER_FINISHED:
+                return prefix + "ORDER_FINISHED status=" + renderStatus(record[3]) + " missing=" + record[4];
+            default:
+                return prefix + "UNKNOWN type=" + record[0];
+        }
+    }
+
+    private static String renderStatus(int status) {
+        switch (status) {
+            case DispatchTrace.STATUS_DISPATCHED:
+                return "DISPATCHED";
+            case DispatchTrace.STATUS_REJECTED:
+                return "REJECTED";
+            default:
+                return "UNKNOWN(" + status + ")";
+        }
+    }
+}
@@ -2,14 +2,20 @@ package vaccinesdistribution.Service;
 
 import java.util.Map;
 import java.util.List;
-import java.util.Queue;
+import java.util.Set;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.io.IOException;
 import java.util.Deque;
 import java.util.ArrayDeque;
 import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -18,193 +24,966 @@ import vaccinesdistribution.Interface.Perishable;
 import vaccinesdistribution.Interface.SpatialCollection;
 import vaccinesdistribution.Model.Warehouse;
 import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.OrderPriority;
+import vaccinesdistribution.Model.OrderStatus;
+import vaccinesdistribution.Model.Product;
+import vaccinesdistribution.Model.Reservation;
 import vaccinesdistribution.Model.VaccineBatch;
-import vaccinesdistribution.Util.ArraySpatialCollection;
+import vaccinesdistribution.Util.AppendOnlyList;
+import vaccinesdistribution.Util.ChunkedList;
 import vaccinesdistribution.Util.Point;
+import vaccinesdistribution.Util.TimingWheel;
 
 public class Distributor {
     private static final Logger logger = LogManager.getLogger(Distributor.class);
     private static final Logger timeLogger = LogManager.getLogger("times");
 
-    private static final Distributor distributor = new Distributor();
     private static final String WAREHOUSE_FILE_PATH = "app/src/main/resources/warehouses_storage.json";
+    private static final int TRACE_CAPACITY = 1 << 16;
+    private static final int MAX_PLANNING_ROUNDS = 3;
+    public static final int MINUTES_PER_DAY = 24 * 60;
 
-
-    private SpatialCollection<Warehouse> stores = new ArraySpatialCollection<>();
-    private List<Order> previousDayOrders = new ArrayList<>();
-    private List<Order> currentDayOrders = new ArrayList<>();
+    private final Supplier<SpatialCollection<Warehouse>> storesFactory;
+    private final int closestNeighboursSize;
+    private SpatialCollection<Warehouse> stores;
+    // Warehouses that currently stock each product. A warehouse is in the
+    // collection of a product if and only if it has vaccines of it left, so
+    // orders of a product only search the warehouses able to supply them.
+    private Map<Product, SpatialCollection<Warehouse>> productStores = new HashMap<>();
+    private Map<Product, Integer> availableBatchesByProduct = new HashMap<>();
+    private AppendOnlyList<Order> previousDayOrders = new AppendOnlyList<>();
+    private AppendOnlyList<Order> currentDayOrders = new AppendOnlyList<>();
     private Deque<Order> historicOrders = new ArrayDeque<>();
-    private Queue<Order> pendingOrders = new ArrayDeque<>();
+    private OrderScheduler pendingOrders = new OrderScheduler();
+    private final DispatchTrace trace = new DispatchTrace(TRACE_CAPACITY);
+    // Warehouses this instance may modify in place. It is null until the
+    // instance is forked; afterwards any other warehouse is shared with a
+    // fork and must be copied before being modified.
+    private Set<Warehouse> ownedWarehouses;
+    // Built on first use, see getInventoryAggregates()
+    private InventoryAggregates inventoryAggregates;
+    private ReplenishmentStrategy replenishmentStrategy = new DemandAwareReplenishment();
+    private DispatchStatistics dispatchStatistics = new DispatchStatistics();
+    private DispatchStatistics previousDayDispatchStatistics = new DispatchStatistics();
+    private LatencyStatistics latencyStatistics = new LatencyStatistics();
+    private LatencyStatistics previousDayLatencyStatistics = new LatencyStatistics();
+    private WasteLedger wasteLedger = new WasteLedger();
+    // Groups co-located pending orders, null to dispatch them one by one
+    private OrderCoalescer orderCoalescer;
+    private boolean twoPhaseDispatch;
+    // Event driven clock ticking every minute, null while the distributor
+    // advances a whole day at a time with finishDay()
+    private TimingWheel<Runnable> eventClock;
+    private int orderDispatchDelay;
+    // Dispatches served ahead of their event, see dispatchFreedOrders()
+    private int dispatchesTaken;
+    // Whether finishDay() is dispatching the orders left in the day
+    private boolean finishingDay;
+    // Time of the next expiry check scheduled for every warehouse id
+    private Map<Integer, Long> nextExpiryChecks;
+    // Work done by the order being dispatched, see dispatch()
+    private int orderNeighbourQueries;
+    private int orderWarehousesTouched;
+    // Last published snapshot. The warehouses and their stock are kept in
+    // copy-on-write lists, by position of the warehouse, and the views of
+    // the next snapshot are only taken when they changed, null otherwise.
+    private volatile DistributorSnapshot snapshot;
+    private ChunkedList<Warehouse> warehouseList = new ChunkedList<>();
+    private ChunkedList<Integer> warehouseStock = new ChunkedList<>();
+    private List<Warehouse> warehousesView;
+    private List<Integer> warehouseStockView;
+    // Position of every warehouse id in the lists. Shared with forks until
+    // either side adds a warehouse.
+    private Map<Integer, Integer> warehousePositions = new HashMap<>();
+    private boolean warehousePositionsShared;
+    // Status of the orders of both days as published in the snapshots, and
+    // the position of every order id in them
+    private ChunkedList<OrderStatus> previousDayStatuses = new ChunkedList<>();
+    private ChunkedList<OrderStatus> currentDayStatuses = new ChunkedList<>();
+    private Map<Integer, Integer> previousDayPositions = new HashMap<>();
+    private Map<Integer, Integer> currentDayPositions = new HashMap<>();
     
     private int availableBatches;
     private int currentDay;
 
-    private Distributor() {
+    /**
+     * Creates a distributor independent of any other, loading its
+     * warehouses from the configured source. If they cannot be read the
+     * distributor starts without warehouses.
+     * @param configuration the configuration of the distributor
+     */
+    public Distributor(DistributorConfiguration configuration) {
         availableBatches = 0;
         currentDay = 0;
+        storesFactory = configuration.getStoresFactory();
+        closestNeighboursSize = configuration.getClosestNeighboursSize();
+        stores = storesFactory.get();
+        if (Boolean.getBoolean("vaccinesdistribution.trace")) trace.enable();
         try {
             stores.setItemsFromList(
-                Storage.loadWarehousesFromJsonFile(WAREHOUSE_FILE_PATH)
+                configuration.getWarehouseSource().loadWarehouses()
             );
             logger.info("Warehouses loaded successfully");
         } catch (IOException e) {
-            logger.error("Failed to load warehouses from file " + e);
+            logger.error("Failed to load warehouses", e);
         }
 
         for (Warehouse warehouse : stores.getItems()) {
-            availableBatches += warehouse.getAvailableBatches();
+            listWarehouse(warehouse);
+            indexWarehouse(warehouse);
+        }
+        publishSnapshot();
+    }
+
+    private Distributor(Distributor parent) {
+        availableBatches = parent.availableBatches;
+        currentDay = parent.currentDay;
+        if (parent.trace.isEnabled()) trace.enable();
+
+        storesFactory = parent.storesFactory;
+        closestNeighboursSize = parent.closestNeighboursSize;
+        stores = parent.stores.fork();
+        for (Map.Entry<Product, SpatialCollection<Warehouse>> entry : parent.productStores.entrySet()) {
+            productStores.put(entry.getKey(), entry.getValue().fork());
+        }
+        availableBatchesByProduct.putAll(parent.availableBatchesByProduct);
+        replenishmentStrategy = parent.replenishmentStrategy.fork();
+        // The fork only records its own waste and never spills it to disk
+        wasteLedger = new WasteLedger(parent.wasteLedger.getDetailWindowDays(), null);
+        orderCoalescer = parent.orderCoalescer;
+        twoPhaseDispatch = parent.twoPhaseDispatch;
+        ownedWarehouses = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Processed orders are not modified anymore, so they are shared.
+        // Pending orders are copied so each side dispatches its own.
+        pendingOrders.setStarvationLimit(parent.pendingOrders.getStarvationLimit());
+        Map<Order, Order> pendingCopies = new IdentityHashMap<>();
+        for (Order order : parent.pendingOrders) {
+            Order copy = new Order(order, order.getQuantity());
+            pendingCopies.put(order, copy);
+            pendingOrders.add(copy);
+        }
+        for (Order order : parent.currentDayOrders.view()) {
+            currentDayOrders.add(pendingCopies.getOrDefault(order, order));
         }
+        // Nothing is appended to the previous day orders anymore
+        previousDayOrders = parent.previousDayOrders;
+        previousDayStatuses = parent.previousDayStatuses.copy();
+        currentDayStatuses = parent.currentDayStatuses.copy();
+        previousDayPositions = parent.previousDayPositions;
+        currentDayPositions = new HashMap<>(parent.currentDayPositions);
+
+        warehouseList = parent.warehouseList.copy();
+        warehouseStock = parent.warehouseStock.copy();
+        warehousesView = parent.warehousesView;
+        warehouseStockView = parent.warehouseStockView;
+        warehousePositions = parent.warehousePositions;
+        warehousePositionsShared = true;
+        parent.warehousePositionsShared = true;
+        publishSnapshot();
     }
 
+    /**
+     * Returns the distributor of the warehouses in WAREHOUSE_FILE_PATH,
+     * created on the first call
+     */
     public static Distributor getDistributor() {
-        return distributor;
+        return DefaultDistributorHolder.distributor;
+    }
+
+    private static class DefaultDistributorHolder {
+        private static final Distributor distributor = new Distributor(
+            DistributorConfiguration.fromFile(WAREHOUSE_FILE_PATH));
+    }
+
+    /**
+     * Returns an independent copy of this distributor to run what-if
+     * simulations on. Warehouses are shared copy-on-write between both
+     * instances: a warehouse and its batches are only copied by the first
+     * instance that modifies it, so forking copies no warehouse nor batch,
+     * only the chunk index of the published warehouse list (one entry per
+     * 1024 warehouses). Pending and current day orders are
+     * carried over; the order history of the fork starts empty.
+     *
+     * Forks do not share mutable state, so different forks can run on
+     * different threads.
+     * @return a copy of this distributor
+     */
+    public Distributor fork() {
+        if (eventClock != null) {
+            throw new IllegalStateException("Cannot fork a distributor running on the event clock");
+        }
+        Distributor fork = new Distributor(this);
+        ownedWarehouses = Collections.newSetFromMap(new IdentityHashMap<>());
+        return fork;
+    }
+
+    public DispatchTrace getTrace() {
+        return trace;
     }
 
+    /**
+     * Returns the last published snapshot of this distributor. A new one is
+     * published after every public method that changes the distributor, so
+     * other threads can poll it without locking nor copying.
+     */
+    public DistributorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns an unmodifiable list of the warehouses, see getSnapshot()
+     */
     public List<Warehouse> getWarehouses() {
-        return stores.getItems();
+        return snapshot.getWarehouses();
     }
 
     public void addWarehouse(Warehouse warehouse) {
         stores.add(warehouse);
+        listWarehouse(warehouse);
+        indexWarehouse(warehouse);
+        if (ownedWarehouses != null) ownedWarehouses.add(warehouse);
+        if (eventClock != null) scheduleExpiryCheck(warehouse);
+
+        if (inventoryAggregates != null) {
+            warehouse.setInventoryListener(inventoryAggregates);
+            inventoryAggregates.rebuild(stores.getItems());
+        }
+        publishSnapshot();
+    }
+
+    /**
+     * Returns the regional stock aggregates of this distributor. They are
+     * built on the first call and kept up to date by the warehouses from
+     * then on.
+     * @return the inventory aggregates of this distributor
+     */
+    public InventoryAggregates getInventoryAggregates() {
+        if (inventoryAggregates != null) return inventoryAggregates;
+
+        List<Warehouse> warehouses = stores.getItems();
+        inventoryAggregates = new InventoryAggregates(warehouses);
+        for (Warehouse warehouse : warehouses) {
+            // Warehouses shared with a fork get the listener once copied
+            if (ownedWarehouses == null || ownedWarehouses.contains(warehouse)) {
+                warehouse.setInventoryListener(inventoryAggregates);
+            }
+        }
+        return inventoryAggregates;
+    }
+
+    public WasteLedger getWasteLedger() {
+        return wasteLedger;
+    }
+
+    /**
+     * Replaces the waste ledger, e.g. to change how long expired batches are
+     * kept in detail or where they are spilled to. The waste recorded so far
+     * is discarded.
+     */
+    public void setWasteLedger(WasteLedger wasteLedger) {
+        this.wasteLedger = wasteLedger;
+    }
+
+    public OrderCoalescer getOrderCoalescer() {
+        return orderCoalescer;
+    }
+
+    /**
+     * Sets how dispatchOrders() groups co-located pending orders. Each group
+     * is served with a single k closest stores search and a single draw
+     * from the warehouses. Use null to dispatch orders one by one.
+     */
+    public void setOrderCoalescer(OrderCoalescer orderCoalescer) {
+        this.orderCoalescer = orderCoalescer;
+    }
+
+    public boolean isTwoPhaseDispatch() {
+        return twoPhaseDispatch;
+    }
+
+    /**
+     * Sets whether dispatchOrders() and finishDay() dispatch the pending
+     * orders in two phases, off by default. First every order is planned
+     * concurrently, reserving stock in a table kept apart from the
+     * warehouses, which are only read. Then the plans are committed one by
+     * one, in scheduling order, as long as they saw the same stock the
+     * serial dispatch would: no reservation of another plan in their way
+     * and no warehouse they looked at changed by an earlier commit. The
+     * first plan that fails this check releases every later plan, is
+     * planned again on its own and the remaining orders are planned
+     * concurrently again, up to MAX_PLANNING_ROUNDS times; afterwards they
+     * are planned one at a time. Orders are therefore dispatched or
+     * rejected exactly as by the serial dispatch, and a rejected order
+     * leaves the warehouses untouched. Checking and redoing plans makes it
+     * about 1.5 to 4 times slower than the serial dispatch.
+     */
+    public void setTwoPhaseDispatch(boolean twoPhaseDispatch) {
+        this.twoPhaseDispatch = twoPhaseDispatch;
+    }
+
+    /**
+     * Returns the queue of pending orders, which decides the order in which
+     * they are dispatched
+     */
+    public OrderScheduler getOrderScheduler() {
+        return pendingOrders;
+    }
+
+    public ReplenishmentStrategy getReplenishmentStrategy() {
+        return replenishmentStrategy;
+    }
+
+    public void setReplenishmentStrategy(ReplenishmentStrategy replenishmentStrategy) {
+        this.replenishmentStrategy = replenishmentStrategy;
+    }
+
+    /**
+     * Returns the dispatch work statistics of the orders dispatched so far
+     * in the current day
+     */
+    public DispatchStatistics getDispatchStatistics() {
+        return dispatchStatistics;
+    }
+
+    public DispatchStatistics getPreviousDayDispatchStatistics() {
+        return previousDayDispatchStatistics;
+    }
+
+    /**
+     * Returns the queueing delay and deadline misses per priority lane of
+     * the orders dispatched so far in the current day
+     */
+    public LatencyStatistics getLatencyStatistics() {
+        return latencyStatistics;
+    }
+
+    public LatencyStatistics getPreviousDayLatencyStatistics() {
+        return previousDayLatencyStatistics;
+    }
+
+    public long getStockInRegion(int minX, int minY, int maxX, int maxY) {
+        return getInventoryAggregates().getStock(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns the number of available vaccines in the region that expire
+     * within the given number of days from the current day
+     */
+    public long getStockExpiringWithin(int minX, int minY, int maxX, int maxY, int days) {
+        return getInventoryAggregates().getStockExpiringBetween(
+            minX, minY, maxX, maxY, currentDay, currentDay + days);
     }
 
     public int getCurrentDay() {
         return currentDay;
     }
 
+    /**
+     * Returns the current simulation time in minutes. While the event clock
+     * is disabled it is the start of the current day.
+     */
+    public long getCurrentTime() {
+        return eventClock == null ? (long) currentDay * MINUTES_PER_DAY : eventClock.getCurrentTick();
+    }
+
+    public boolean isEventClockEnabled() {
+        return eventClock != null;
+    }
+
+    /**
+     * Switches the distributor to an event driven clock with a resolution
+     * of one minute, advanced with advanceClock(). From then on:
+     * <ul>
+     * <li>orderDispatchDelay minutes after every order is placed, the
+     * pending order picked by the order scheduler is dispatched, along
+     * with those due within the time window of the order coalescer,</li>
+     * <li>each warehouse disposes its batches when the earliest one expires,</li>
+     * <li>new batches arrive one by one at random times of the day,</li>
+     * <li>the day changes at midnight.</li>
+     * </ul>
+     * finishDay() keeps working: it dispatches the pending orders and
+     * advances the clock to the start of the next day.
+     * @param orderDispatchDelay minutes between the placement of an order and the dispatch it frees
+     */
+    public void enableEventClock(int orderDispatchDelay) {
+        if (eventClock != null) {
+            throw new IllegalStateException("Event clock already enabled");
+        }
+        if (orderDispatchDelay < 0) {
+            throw new IllegalArgumentException("Order dispatch delay cannot be negative");
+        }
+
+        // Scheduled events keep references to warehouses, so they must not
+        // be replaced by copies anymore
+        if (ownedWarehouses != null) stores.replaceAll(this::ownedIndexedCopy);
+
+        this.orderDispatchDelay = orderDispatchDelay;
+        eventClock = new TimingWheel<>((long) currentDay * MINUTES_PER_DAY);
+        nextExpiryChecks = new HashMap<>();
+        for (Order order : pendingOrders) {
+            scheduleOrderDispatch(order);
+        }
+        for (Warehouse warehouse : stores.getItems()) {
+            scheduleExpiryCheck(warehouse);
+        }
+        // Today's batches were already inserted by the last finishDay()
+        eventClock.schedule((long) (currentDay + 1) * MINUTES_PER_DAY, this::startNextDay);
+        logger.info("Event clock enabled at minute {}", eventClock.getCurrentTick());
+        publishSnapshot();
+    }
+
+    /**
+     * Advances the event clock, running every event due in the meantime
+     * @param minutes the number of minutes to advance
+     */
+    public void advanceClock(long minutes) {
+        if (eventClock == null) {
+            throw new IllegalStateException("Event clock not enabled");
+        }
+        eventClock.advanceTo(eventClock.getCurrentTick() + minutes, Runnable::run);
+        publishSnapshot();
+    }
+
     public int getAvailableBatches() {
         return availableBatches;
     }
 
+    public int getAvailableBatches(Product product) {
+        return availableBatchesByProduct.getOrDefault(product, 0);
+    }
+
+    /**
+     * Returns the warehouses that currently have vaccines of the product
+     */
+    public List<Warehouse> getWarehouses(Product product) {
+        SpatialCollection<Warehouse> candidates = productStores.get(product);
+        return candidates == null ? new ArrayList<>() : candidates.getItems();
+    }
+
+    /**
+     * Returns an unmodifiable list of the previous day orders. The orders
+     * are modified while dispatching, so they must only be read from the
+     * thread using the distributor; other threads should read their
+     * status from getSnapshot().
+     */
     public List<Order> getPreviousDayOrders() {
-        return new ArrayList<>(previousDayOrders);
+        return previousDayOrders.view();
     }
 
+    /**
+     * Returns an unmodifiable list of the current day orders, see
+     * getPreviousDayOrders()
+     */
     public List<Order> getCurrentDayOrders() {
-        return new ArrayList<>(currentDayOrders);
+        return currentDayOrders.view();
     }
 
     public void finishDay() {
-        dispatchOrders();
+        if (eventClock != null) {
+            dispatchPendingOrders();
+            eventClock.advanceTo((long) (currentDay + 1) * MINUTES_PER_DAY, Runnable::run);
+            publishSnapshot();
+            return;
+        }
+
+        finishingDay = true;
+        try {
+            dispatchPendingOrders();
+        } finally {
+            finishingDay = false;
+        }
+        reportDispatchStatistics();
         currentDay++;
 
         disposeExpiredObjects();
         insertNewVaccines();
+        replenishmentStrategy.finishDay();
         setPreviousDayOrders();
+        publishSnapshot();
     }
 
     public void dispatchNextOrder() {
-        Order order;
+        dispatch(pendingOrders.poll());
+        publishSnapshot();
+    }
+
+    public void dispatchOrders() throws RuntimeException {
+        dispatchPendingOrders();
+        publishSnapshot();
+    }
+
+    private void dispatchPendingOrders() {
+        dispatch(drainPendingOrders());
+    }
+
+    /**
+     * Dispatches orders taken from the pending ones, in the order they are
+     * served, grouping them with the order coalescer and planning them in
+     * two phases if enabled
+     */
+    private void dispatch(List<Order> orders) {
+        if (twoPhaseDispatch) {
+            dispatchInTwoPhases(orders);
+            return;
+        }
+
+        if (orderCoalescer == null) {
+            for (Order order : orders) {
+                dispatch(order);
+            }
+            return;
+        }
+
+        List<List<Order>> groups = orderCoalescer.group(orders);
+        for (List<Order> group : groups) {
+            if (group.size() == 1) dispatch(group.get(0));
+            else dispatchGroup(group);
+        }
+    }
+
+    private void dispatch(Order order) {
         List<Perishable> dispatchedBatches;
 
         long startTime = System.currentTimeMillis();
 
-        order = pendingOrders.poll();
-        logger.info("Order dispatching started " + order);
+        logger.info("Order dispatching started {}", order);
+        trace.orderStarted(currentDay, order.getId(), order.getQuantity());
+        orderNeighbourQueries = 0;
+        orderWarehousesTouched = 0;
         dispatchedBatches = dispatchOrder(order);
-        logger.debug("Dispatched batches returned: " + dispatchedBatches);
+        dispatchStatistics.recordOrder(orderWarehousesTouched, orderNeighbourQueries);
+        logger.debug("Dispatched batches returned: {}", dispatchedBatches);
         
         order.setDispatchedBatches(dispatchedBatches);
         logger.info("Dispatchers sucessfully computed");
-        logger.info("Order dispatching finished " + order);
+        logger.info("Order dispatching finished {}", order);
 
         long endTime = System.currentTimeMillis();
+        timeLogger.info("Order dispatching time: {}ms", endTime - startTime);
 
+        completeOrder(order, dispatchedBatches);
+    }
+
+    /**
+     * Dispatches a group of co-located orders with a single search of the
+     * closest stores and a single draw, then splits the drawn batches among
+     * the orders in the group in FIFO order.
+     */
+    private void dispatchGroup(List<Order> group) {
+        int totalQuantity = 0;
+        for (Order order : group) {
+            totalQuantity += order.getQuantity();
+        }
+        if (totalQuantity > getAvailableBatches(group.get(0).getProduct())) {
+            // Some of them may still be dispatched on their own
+            logger.info("Not enough batches to dispatch {} co-located orders together", group.size());
+            for (Order order : group) {
+                dispatch(order);
+            }
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        Order groupOrder = new Order(group.get(0), totalQuantity);
+        logger.info("Dispatching {} co-located orders together {}", group.size(), group);
+        trace.orderStarted(currentDay, groupOrder.getId(), totalQuantity);
+        orderNeighbourQueries = 0;
+        orderWarehousesTouched = 0;
+        List<Perishable> dispatchedBatches = dispatchOrder(groupOrder);
+        dispatchStatistics.recordOrders(group.size(), orderWarehousesTouched, orderNeighbourQueries);
+        splitAmongOrders(group, dispatchedBatches);
+
+        long endTime = System.currentTimeMillis();
+        timeLogger.info("Co-located orders dispatching time ({} orders): {}ms", group.size(), endTime - startTime);
+    }
+
+    /**
+     * Splits the batches drawn for a group of orders among them, in FIFO
+     * order, and completes them
+     */
+    private void splitAmongOrders(List<Order> group, List<Perishable> dispatchedBatches) {
+        int missing;
+        Perishable batch;
+        List<Perishable> orderBatches;
+        int batchIndex = 0;
+        for (Order order : group) {
+            missing = order.getQuantity();
+            orderBatches = new ArrayList<>();
+            while (missing > 0 && batchIndex < dispatchedBatches.size()) {
+                batch = dispatchedBatches.get(batchIndex);
+                if (batch.getQuantity() <= missing) {
+                    orderBatches.add(batch);
+                    batchIndex++;
+                } else {
+                    // The drawn batch is detached from the warehouse, so
+                    // dispatching from it only splits it
+                    batch = batch.dispatch(missing);
+                    orderBatches.add(batch);
+                }
+                missing -= batch.getQuantity();
+            }
+
+            if (missing == 0) order.setDispatched();
+            else order.setRejected();
+            order.setDispatchedBatches(orderBatches);
+            completeOrder(order, orderBatches);
+        }
+    }
+
+    private void dispatchInTwoPhases(List<Order> orders) {
+        if (orders.isEmpty()) return;
+
+        List<List<Order>> groups = new ArrayList<>();
+        if (orderCoalescer == null) {
+            for (Order order : orders) {
+                groups.add(List.of(order));
+            }
+        } else {
+            groups = orderCoalescer.group(orders);
+        }
+
+        List<Order> requests = new ArrayList<>(groups.size());
+        int totalQuantity;
+        for (List<Order> group : groups) {
+            if (group.size() == 1) {
+                requests.add(group.get(0));
+                continue;
+            }
+            totalQuantity = 0;
+            for (Order order : group) {
+                totalQuantity += order.getQuantity();
+            }
+            requests.add(new Order(group.get(0), totalQuantity));
+        }
+
+        long startTime = System.currentTimeMillis();
+        ReservationTable reservations = new ReservationTable();
+        List<DispatchPlan> plans = planConcurrently(requests, 0, reservations);
+        int rounds = 1;
+        DispatchPlan plan;
+        for (int i = 0; i < groups.size(); i++) {
+            plan = plans.get(i);
+            if (plan == null) {
+                plan = planDispatch(requests.get(i), reservations);
+            } else if (!plan.isValid()) {
+                // Later plans hold reservations the serial dispatch would
+                // not see, so they are dropped before planning this order
+                for (int j = i; j < plans.size(); j++) {
+                    plans.get(j).release();
+                }
+                logger.debug("Planning again order {} and the {} after it", requests.get(i), plans.size() - i - 1);
+                plan = planDispatch(requests.get(i), reservations);
+                if (rounds < MAX_PLANNING_ROUNDS) {
+                    plans = planConcurrently(requests, i + 1, reservations);
+                    rounds++;
+                } else {
+                    plans = new ArrayList<>(Collections.nCopies(requests.size(), null));
+                }
+            }
+            commitDispatch(groups.get(i), plan, reservations);
+        }
+        long endTime = System.currentTimeMillis();
+        timeLogger.info("Two-phase dispatching time ({} orders): {}ms, {} planning rounds", requests.size(), endTime - startTime, rounds);
+    }
+
+    /**
+     * Plans the requests from the given index on concurrently. Nothing but
+     * the reservations is modified while planning.
+     * @return the plans, by index of their request, null before from
+     */
+    private List<DispatchPlan> planConcurrently(List<Order> requests, int from, ReservationTable reservations) {
+        List<DispatchPlan> plans = new ArrayList<>(Collections.nCopies(from, null));
+        plans.addAll(requests.subList(from, requests.size()).parallelStream()
+            .map(request -> planDispatch(request, reservations))
+            .collect(Collectors.toList()));
+        return plans;
+    }
+
+    /**
+     * Reserves the quantity of an order from the closest warehouses that
+     * stock its product, choosing them as the serial dispatch does. Safe to
+     * call concurrently as long as no batch is modified meanwhile.
+     * @return the plan, released unless it covers the whole order
+     */
+    private DispatchPlan planDispatch(Order order, ReservationTable reservations) {
+        DispatchPlan plan = new DispatchPlan(order, reservations);
+        Product product = order.getProduct();
+        SpatialCollection<Warehouse> candidates = productStores.get(product);
+        if (candidates == null || order.getQuantity() > getAvailableBatches(product)) return plan;
+
+        List<Warehouse> closestStores;
+        Perishable topPriorityObject;
+        Map<Integer, Warehouse> storeMap = new HashMap<>();
+        PriorityQueue<Perishable> vaccineBatches = new PriorityQueue<>();
+        Warehouse warehouse;
+        Reservation reservation;
+        int wanted;
+        for (int k = closestNeighboursSize; ; k *= 2) {
+            // The serial dispatch removes the warehouses it empties before
+            // searching further, and they are fully reserved by now
+            closestStores = candidates.getKClosestItems(order.getDeliveryLocation(), k + plan.getReservations().size());
+            plan.neighboursQueried();
+            for (Warehouse store : closestStores) {
+                plan.observe(store);
+                topPriorityObject = store.getTopPriorityObject(product);
+                if (topPriorityObject == null || plan.hasReservation(store)) continue;
+
+                storeMap.put(store.getIdentifier().getId(), store);
+                vaccineBatches.add(topPriorityObject);
+            }
+
+            while (!vaccineBatches.isEmpty()) {
+                warehouse = storeMap.get(vaccineBatches.poll().getStorageId());
+                wanted = Math.min(plan.getMissingQuantity(), warehouse.getAvailableBatches(product));
+                reservation = reservations.reserve(warehouse, product, plan.getMissingQuantity());
+                if (reservation != null) plan.addReservation(reservation);
+                // Stock does not change while planning, so whatever is
+                // missing was reserved by another plan. The plan is then
+                // planned again before its commit, so it stops here.
+                if ((reservation == null ? 0 : reservation.quantity()) < wanted) {
+                    plan.contended();
+                    plan.release();
+                    return plan;
+                }
+                if (plan.isComplete()) return plan;
+            }
+            storeMap.clear();
+            if (k >= candidates.size()) break;
+        }
+
+        plan.release();
+        return plan;
+    }
+
+    /**
+     * Commits the valid plan of a group of orders. If it is incomplete, the
+     * orders of a group are planned and committed one by one.
+     */
+    private void commitDispatch(List<Order> group, DispatchPlan plan, ReservationTable reservations) {
+        Order order = plan.getOrder();
+        if (!plan.isComplete() && group.size() > 1) {
+            // Some of them may still be dispatched on their own
+            logger.info("Not enough batches to dispatch {} co-located orders together", group.size());
+            for (Order member : group) {
+                commitDispatch(List.of(member), planDispatch(member, reservations), reservations);
+            }
+            return;
+        }
+
+        trace.orderStarted(currentDay, order.getId(), order.getQuantity());
+        List<Perishable> dispatchedBatches = new ArrayList<>();
+        Set<Warehouse> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        Warehouse warehouse;
+        List<Perishable> committedBatches;
+        int committedQuantity;
+        for (Reservation reservation : plan.getReservations()) {
+            reservations.commit(reservation);
+            // Only the warehouses dispatched from are copied if shared with
+            // a fork, planning just reads them
+            warehouse = writable(reservation.warehouse());
+            committedBatches = warehouse.dispatch(reservation.product(), reservation.quantity());
+            committedQuantity = computeBatchSize(committedBatches);
+            updateStock(warehouse, order.getProduct(), -committedQuantity);
+            if (trace.isEnabled()) {
+                trace.quantityTaken(currentDay, order.getId(), warehouse.getIdentifier().getId(), committedQuantity);
+            }
+            touched.add(warehouse);
+            dispatchedBatches.addAll(committedBatches);
+        }
+        dispatchStatistics.recordOrders(group.size(), touched.size(), plan.getNeighbourQueries());
+
+        if (group.size() > 1) {
+            splitAmongOrders(group, dispatchedBatches);
+            return;
+        }
+
+        if (plan.isComplete()) order.setDispatched();
+        else {
+            order.setRejected();
+            logger.info("Not enough batches available to dispatch order {}", order);
+        }
+        order.setDispatchedBatches(dispatchedBatches);
+        completeOrder(order, dispatchedBatches);
+    }
+
+    /**
+     * Removes every pending order, in the order the scheduler serves them
+     */
+    private List<Order> drainPendingOrders() {
+        List<Order> orders = new ArrayList<>(pendingOrders.size());
+        while (!pendingOrders.isEmpty()) {
+            orders.add(pendingOrders.poll());
+        }
+        return orders;
+    }
+
+    private void completeOrder(Order order, List<Perishable> dispatchedBatches) {
         order.setProcessingDate(currentDay);
         historicOrders.add(order);
-        timeLogger.info("Order dispatching time: " + (endTime - startTime) + "ms");
+        updateStatus(order);
+        latencyStatistics.recordOrder(order, getDispatchTime());
         
+        int dispatchedQuantity = computeBatchSize(dispatchedBatches);
+        trace.orderFinished(
+            currentDay,
+            order.getId(),
+            order.isRejected() ? DispatchTrace.STATUS_REJECTED : DispatchTrace.STATUS_DISPATCHED,
+            order.getQuantity() - dispatchedQuantity);
+
         if (order.isRejected()) return;
 
-        if (order.getQuantity() != computeBatchSize(dispatchedBatches)){
-            logger.error("Dispatched quantity " + computeBatchSize(dispatchedBatches) + " does not match order quantity for not rejected order. Order: " + order + "\nDispatched: " + dispatchedBatches);
+        if (order.getQuantity() != dispatchedQuantity){
+            logger.error("Dispatched quantity {} does not match order quantity for not rejected order. Order: {}\nDispatched: {}", dispatchedQuantity, order, dispatchedBatches);
             throw new RuntimeException("Dispatched quantity does not match order quantity for not rejected order. Order: " + order);
         }
     }
 
-    public void dispatchOrders() throws RuntimeException {
-        while (!pendingOrders.isEmpty()) {
-            dispatchNextOrder();
-        }
+    public void createOrder(int quantity, Point deliveryLocation) throws IllegalArgumentException {
+        createOrder(Product.DEFAULT, quantity, deliveryLocation);
     }
 
-    public void createOrder(int quantity, Point deliveryLocation) throws IllegalArgumentException {
+    public void createOrder(Product product, int quantity, Point deliveryLocation) throws IllegalArgumentException {
+        createOrder(product, quantity, deliveryLocation, OrderPriority.ROUTINE);
+    }
+
+    /**
+     * Creates an order due the target delay of its priority after now
+     */
+    public void createOrder(Product product, int quantity, Point deliveryLocation, OrderPriority priority) throws IllegalArgumentException {
+        createOrder(product, quantity, deliveryLocation, priority, getCurrentTime() + priority.getTargetDelay());
+    }
+
+    /**
+     * Creates an order to be dispatched by the given deadline
+     * @param deadline the simulation time, in minutes, by which the order should be dispatched
+     */
+    public void createOrder(Product product, int quantity, Point deliveryLocation, OrderPriority priority, long deadline) throws IllegalArgumentException {
         if (quantity <= 0) {
-            logger.warn("Attempted to create order with invalid quantity: " + quantity);
+            logger.warn("Attempted to create order with invalid quantity: {}", quantity);
             throw new IllegalArgumentException("Invalid quantity");
         }
-        if (quantity > 0.1 * availableBatches) {
-            logger.warn("Attempted to create order to " + deliveryLocation + " with too many vaccines: " + quantity);
-            throw new IllegalArgumentException("Cannot order more than 10% of available vaccines");
+        if (quantity > 0.1 * getAvailableBatches(product)) {
+            logger.warn("Attempted to create order of {} to {} with too many vaccines: {}", product, deliveryLocation, quantity);
+            throw new IllegalArgumentException("Cannot order more than 10% of available vaccines of " + product);
+        }
+
+        if (deadline < getCurrentTime()) {
+            logger.warn("Attempted to create order to {} with a deadline in the past: {}", deliveryLocation, deadline);
+            throw new IllegalArgumentException("Deadline cannot be in the past");
         }
 
-        Order order = new Order(quantity, deliveryLocation);
+        Order order = new Order(product, quantity, deliveryLocation);
+        order.setPlacementTime(getCurrentTime());
+        order.setPriority(priority);
+        order.setDeadline(deadline);
         addOrder(order);
-        logger.info("Order created successfully " + order);
-        logger.debug("Daily orders updated " + pendingOrders);
+        if (eventClock != null) scheduleOrderDispatch(order);
+        replenishmentStrategy.recordDemand(deliveryLocation, quantity);
+        logger.info("Order created successfully {}", order);
+        logger.debug("Daily orders updated {}", pendingOrders);
+        publishSnapshot();
     }
 
     private void addOrder(Order order) {
         pendingOrders.add(order);
         currentDayOrders.add(order);
+        currentDayPositions.put(order.getId(), currentDayStatuses.size());
+        currentDayStatuses.add(new OrderStatus(order));
+    }
+
+    /**
+     * Updates the published status of an order of the current or previous
+     * day. Older orders are not part of the snapshots.
+     */
+    private void updateStatus(Order order) {
+        Integer position = currentDayPositions.get(order.getId());
+        if (position != null) {
+            currentDayStatuses.set(position, new OrderStatus(order));
+            return;
+        }
+        position = previousDayPositions.get(order.getId());
+        if (position != null) previousDayStatuses.set(position, new OrderStatus(order));
     }
     
     private List<Perishable> dispatchOrder(Order order) {
         List<Perishable> totalDispatchedBatches = new ArrayList<>();
         // The List<Perishable> is passed by reference to avoid creating a new
         // object every time. This should reduce memory consumption
-        return dispatchOrder(order, 5, totalDispatchedBatches);
+        return dispatchOrder(order, closestNeighboursSize, totalDispatchedBatches);
     }
 
     private List<Perishable> dispatchOrder(Order order, int closestNeighboursSize, List<Perishable> totalDispatchedBatches) {
         int quantity = order.getQuantity();
-        if (quantity > availableBatches) {
+        Product product = order.getProduct();
+        SpatialCollection<Warehouse> candidates = productStores.get(product);
+        if (candidates == null || quantity > getAvailableBatches(product)) {
             order.setRejected();
-            logger.info("Not enough batches available to dispatch order " + order);
+            logger.info("Not enough batches available to dispatch order {}", order);
             return totalDispatchedBatches;
         }
+        // Emptied warehouses leave the candidates while dispatching
+        int candidatesSize = candidates.size();
         
-        logger.info("Started computation of " + closestNeighboursSize + " closest stores to the deliveryLocation");
+        logger.info("Started computation of {} closest stores to the deliveryLocation", closestNeighboursSize);
         // long initialTime = System.nanoTime();
         long initialTime = System.currentTimeMillis();
-        List<Warehouse> closestStores = stores.getKClosestItems(order.getDeliveryLocation(), closestNeighboursSize);
+        List<Warehouse> closestStores = candidates.getKClosestItems(order.getDeliveryLocation(), closestNeighboursSize);
         long finalTime = System.currentTimeMillis();
-        timeLogger.info("Computation of " + closestNeighboursSize + " closest stores: " + (finalTime - initialTime) + "ms");
-        logger.debug("Closest stores found for order " + closestStores);
+        orderNeighbourQueries++;
+        timeLogger.info("Computation of {} closest stores: {}ms", closestNeighboursSize, finalTime - initialTime);
+        logger.debug("Closest stores found for order {}", closestStores);
+        trace.neighboursQueried(currentDay, order.getId(), closestNeighboursSize, closestStores.size());
         
         // Sort the stores based on the priority of their perishables
         Perishable topPriorityObject;
+        int stock;
+        int warehouseId;
         Map<Integer, Warehouse> storeMap = new HashMap<>();
         PriorityQueue<Perishable> vaccineBatches = new PriorityQueue<>();
         for (Warehouse warehouse : closestStores) {
-            topPriorityObject = warehouse.getTopPriorityObject();
-            if (topPriorityObject == null || warehouse.getAvailableBatches() == 0) continue;
+            topPriorityObject = warehouse.getTopPriorityObject(product);
+            if (topPriorityObject == null) continue;
+            stock = warehouse.getAvailableBatches(product);
+            if (stock == 0) continue;
 
-            storeMap.put(warehouse.getIdentifier().getId(), warehouse);
+            warehouseId = warehouse.getIdentifier().getId();
+            storeMap.put(warehouseId, warehouse);
             vaccineBatches.add(topPriorityObject);
+            if (trace.isEnabled()) {
+                trace.warehouseConsidered(
+                    currentDay,
+                    order.getId(),
+                    warehouseId,
+                    topPriorityObject.getExpirationDate(),
+                    stock);
+            }
         }
-        logger.debug("Successfully sorted stores based on their top priority perishable " + vaccineBatches);
+        logger.debug("Successfully sorted stores based on their top priority perishable {}", vaccineBatches);
 
         int dispatchedQuantity;
         Perishable batch;
         Warehouse dispatcherWarehouse;
         List<Perishable> dispatchedBatches;
 
-        logger.debug("Dequeuing started. Current available batches: " + availableBatches);
+        logger.debug("Dequeuing started. Current available batches: {}", availableBatches);
         while (quantity > 0 && !vaccineBatches.isEmpty()) {
             // get the Warehouse with the top priority perishable and dispatch
             // as much as possible from it
             batch = vaccineBatches.poll();
-            dispatcherWarehouse = storeMap.get(batch.getStorageId());
+            dispatcherWarehouse = writable(storeMap.get(batch.getStorageId()));
 
-            dispatchedBatches = dispatcherWarehouse.dispatch(quantity);
+            dispatchedBatches = dispatcherWarehouse.dispatch(product, quantity);
             totalDispatchedBatches.addAll(dispatchedBatches);
 
             dispatchedQuantity = computeBatchSize(dispatchedBatches);
+            if (dispatchedQuantity > 0) orderWarehousesTouched++;
             quantity -= dispatchedQuantity;
-            availableBatches -= dispatchedQuantity;
+            updateStock(dispatcherWarehouse, product, -dispatchedQuantity);
+            trace.quantityTaken(currentDay, order.getId(), batch.getStorageId(), dispatchedQuantity);
         }
-        logger.debug("Dequeuing finished. Current available batches: " + availableBatches + ", batches missing: " + quantity);
+        logger.debug("Dequeuing finished. Current available batches: {}, batches missing: {}", availableBatches, quantity);
 
         // if there is no more quantity to dispatch or the neighborhood size
         // is greater than the number of warehouses in the system then return
@@ -213,18 +992,18 @@ public class Distributor {
             return totalDispatchedBatches;
         }
 
-        if (closestNeighboursSize >= stores.size()) {
-            logger.error("There wasn't enough batches in the system to fully dispatch order " + order);
+        if (closestNeighboursSize >= candidatesSize) {
+            logger.error("There wasn't enough batches in the system to fully dispatch order {}", order);
             throw new RuntimeException("There wasn't enough batches in the system to fully dispatch order " + order);
         }
 
         Order newOrder = new Order(order, quantity);
-        logger.info("Not enough batches available to dispatch order from the " + closestNeighboursSize + " closest stores.");
-        logger.info("New order created to dispatch remaining quantity using the " + 2*closestNeighboursSize + " closest stores", newOrder);
+        logger.info("Not enough batches available to dispatch order from the {} closest stores.", closestNeighboursSize);
+        logger.info("New order created to dispatch remaining quantity using the {} closest stores {}", 2*closestNeighboursSize, newOrder);
 
-        logger.debug("totalDispatchedBatches BEFORE dispatching newOrder is " + totalDispatchedBatches);
+        logger.debug("totalDispatchedBatches BEFORE dispatching newOrder is {}", totalDispatchedBatches);
         dispatchOrder(newOrder, 2 * closestNeighboursSize, totalDispatchedBatches);
-        logger.debug("totalDispatchedBatches AFTER dispatching newOrder is " + totalDispatchedBatches);
+        logger.debug("totalDispatchedBatches AFTER dispatching newOrder is {}", totalDispatchedBatches);
 
         if (newOrder.isRejected()) {
             order.setRejected();
@@ -247,50 +1026,331 @@ public class Distributor {
         logger.info("Disposition of expired objects started");
 
         long initialTime = System.currentTimeMillis();
-        for (Warehouse Warehouse : stores.getItems()) {
-            Warehouse.disposeExpiredObjects(currentDay);
+        if (ownedWarehouses == null) {
+            for (Warehouse Warehouse : stores.getItems()) {
+                recordExpiredBatches(Warehouse, currentDay, Warehouse.disposeExpiredObjects(currentDay));
+            }
+        } else {
+            // Only copy the shared warehouses that actually hold expired batches
+            stores.replaceAll(warehouse -> {
+                if (!warehouse.hasExpiredObjects(currentDay)) return warehouse;
+
+                Warehouse owned = ownedIndexedCopy(warehouse);
+                recordExpiredBatches(owned, currentDay, owned.disposeExpiredObjects(currentDay));
+                return owned;
+            });
         }
+        wasteLedger.finishDay(currentDay);
         long finalTime = System.currentTimeMillis();
-        timeLogger.info("Disposition of expired objects time: " + (finalTime - initialTime) + "ms");
+        timeLogger.info("Disposition of expired objects time: {}ms", finalTime - initialTime);
         logger.info("Disposition of expired objects finished");
     }
 
-    private void insertNewVaccines() {
-        Random random = new Random();
+    private void recordExpiredBatches(Warehouse warehouse, int day, List<Perishable> expiredBatches) {
+        wasteLedger.record(warehouse, day, expiredBatches);
+        for (Perishable batch : expiredBatches) {
+            updateStock(warehouse, batch.getProduct(), -batch.getQuantity());
+        }
+    }
+
+    private List<VaccineBatch> generateDailyBatches(Random random) {
         // Number of batches of vaccines to insert in the the system. A
         // random number between 10 and 50.
         int nBatches = random.nextInt(41) + 10;
-        
-        List<Warehouse> warehouseList = stores.getItems();
-        if (warehouseList.isEmpty()) {
-            return;
-        }
 
         int batchSize; // It'll be a random number between 50 and 200 for each batch.
         int daysToExpire; // It'll be a random number between 10 and 30 for each batch.
-        VaccineBatch batch;
-        Warehouse randomWarehouse;
+        List<VaccineBatch> batches = new ArrayList<>(nBatches);
+        for (int i = 0; i < nBatches; i++) {
+            batchSize = random.nextInt(151) + 50;
+            daysToExpire = random.nextInt(21) + 10;
+            batches.add(new VaccineBatch(batchSize, currentDay + daysToExpire));
+        }
+        return batches;
+    }
 
-        logger.info("Insertion of new vaccines started. Current available batches: " + availableBatches);
+    private void insertNewVaccines() {
+        if (stores.size() == 0) {
+            return;
+        }
+
+        List<VaccineBatch> batches = generateDailyBatches(new Random());
+        int nBatches = batches.size();
+
+        logger.info("Insertion of new vaccines started. Current available batches: {}", availableBatches);
 
         long initialTime = System.currentTimeMillis();
+        List<Warehouse> targets = replenishmentStrategy.place(batches, stores);
+
+        VaccineBatch batch;
+        Warehouse targetWarehouse;
+        // A target may be chosen several times but must only be copied once
+        Map<Warehouse, Warehouse> writableTargets = new IdentityHashMap<>();
         for (int i = 0; i < nBatches; i++) {
-            batchSize = random.nextInt(151) + 50;
-            daysToExpire = random.nextInt(21) + 10;
-            
-            batch = new VaccineBatch(batchSize, currentDay + daysToExpire);
-            randomWarehouse = warehouseList.get(random.nextInt(warehouseList.size()));            
-            randomWarehouse.registerPerishableBatch(batch);
-            
-            availableBatches += batchSize;
+            batch = batches.get(i);
+            targetWarehouse = writableTargets.computeIfAbsent(targets.get(i), this::writable);
+            targetWarehouse.registerPerishableBatch(batch);
+            updateStock(targetWarehouse, batch.getProduct(), batch.getQuantity());
         }
         long finalTime = System.currentTimeMillis();
-        timeLogger.info("Insertion of new vaccines time: " + (finalTime - initialTime) + "ms");
-        logger.info("Insertion of new vaccines finished. " + nBatches + " batches inserted. Current available batches: " + availableBatches);
+        timeLogger.info("Insertion of new vaccines time ({} replenishment): {}ms", replenishmentStrategy.getName(), finalTime - initialTime);
+        logger.info("Insertion of new vaccines finished. {} batches inserted. Current available batches: {}", nBatches, availableBatches);
+    }
+
+    private void scheduleOrderDispatch(Order order) {
+        eventClock.schedule(order.getPlacementTime() + orderDispatchDelay, this::dispatchFreedOrders);
+    }
+
+    /**
+     * Every order placed frees a dispatch after the delay, which serves
+     * whichever pending order the scheduler picks. All of them may have
+     * been dispatched already by dispatchOrders().
+     *
+     * With an order coalescer, the pending orders whose own dispatch is due
+     * within its time window are served along with the picked one, so they
+     * can be grouped with it; the dispatches their placement frees later
+     * are then skipped. Either way the orders go through the same grouping
+     * and two-phase planning as dispatchOrders().
+     */
+    private void dispatchFreedOrders() {
+        if (dispatchesTaken > 0) {
+            dispatchesTaken--;
+            return;
+        }
+        if (pendingOrders.isEmpty()) return;
+
+        List<Order> orders = new ArrayList<>();
+        orders.add(pendingOrders.poll());
+        if (orderCoalescer != null && orderCoalescer.getTimeWindow() > 0) {
+            long now = eventClock.getCurrentTick();
+            long horizon = now + orderCoalescer.getTimeWindow();
+            List<Order> due = new ArrayList<>();
+            Iterator<Order> iterator = pendingOrders.iterator();
+            Order order;
+            long dueTime;
+            while (iterator.hasNext()) {
+                order = iterator.next();
+                dueTime = order.getPlacementTime() + orderDispatchDelay;
+                if (dueTime <= now || dueTime > horizon) continue;
+
+                iterator.remove();
+                due.add(order);
+            }
+            // Served as the scheduler would, leaving starvation aside
+            due.sort(Comparator.comparingLong(Order::getDeadline).thenComparingInt(Order::getId));
+            orders.addAll(due);
+            dispatchesTaken += due.size();
+        }
+        dispatch(orders);
+    }
+
+    private void scheduleExpiryCheck(Warehouse warehouse) {
+        Perishable topPriorityObject = warehouse.getTopPriorityObject();
+        if (topPriorityObject == null) return;
+
+        int warehouseId = warehouse.getIdentifier().getId();
+        long checkTime = (long) topPriorityObject.getExpirationDate() * MINUTES_PER_DAY;
+        Long scheduledCheck = nextExpiryChecks.get(warehouseId);
+        if (scheduledCheck != null && scheduledCheck <= checkTime) return;
+
+        nextExpiryChecks.put(warehouseId, checkTime);
+        eventClock.schedule(checkTime, () -> checkExpiry(warehouse, checkTime));
+    }
+
+    private void checkExpiry(Warehouse warehouse, long checkTime) {
+        nextExpiryChecks.remove(warehouse.getIdentifier().getId(), checkTime);
+
+        int day = (int) (eventClock.getCurrentTick() / MINUTES_PER_DAY);
+        recordExpiredBatches(warehouse, day, warehouse.disposeExpiredObjects(day));
+        scheduleExpiryCheck(warehouse);
+    }
+
+    private void scheduleSupplyArrivals() {
+        Random random = new Random();
+        long startOfDay = (long) currentDay * MINUTES_PER_DAY;
+        for (VaccineBatch batch : generateDailyBatches(random)) {
+            eventClock.schedule(startOfDay + random.nextInt(MINUTES_PER_DAY), () -> receiveBatch(batch));
+        }
+    }
+
+    private void receiveBatch(VaccineBatch batch) {
+        if (stores.size() == 0) return;
+
+        Warehouse target = writable(replenishmentStrategy.place(List.of(batch), stores).get(0));
+        target.registerPerishableBatch(batch);
+        updateStock(target, batch.getProduct(), batch.getQuantity());
+        scheduleExpiryCheck(target);
+        logger.debug("Batch arrived at minute {} {}", eventClock.getCurrentTick(), batch);
+    }
+
+    private void startNextDay() {
+        reportDispatchStatistics();
+        currentDay++;
+
+        wasteLedger.finishDay(currentDay);
+        replenishmentStrategy.finishDay();
+        setPreviousDayOrders();
+
+        scheduleSupplyArrivals();
+        eventClock.schedule((long) (currentDay + 1) * MINUTES_PER_DAY, this::startNextDay);
+        logger.info("Day {} started at minute {}", currentDay, eventClock.getCurrentTick());
+    }
+
+    private void reportDispatchStatistics() {
+        timeLogger.info(
+            "Day {} dispatch work with {} replenishment: {} orders, {} warehouses touched per order ({} the previous day), {} k closest stores queries per order ({} the previous day)",
+            currentDay,
+            replenishmentStrategy.getName(),
+            dispatchStatistics.getOrders(),
+            dispatchStatistics.getMeanWarehousesTouched(),
+            previousDayDispatchStatistics.getMeanWarehousesTouched(),
+            dispatchStatistics.getMeanNeighbourQueries(),
+            previousDayDispatchStatistics.getMeanNeighbourQueries());
+
+        for (OrderPriority priority : OrderPriority.values()) {
+            timeLogger.info(
+                "Day {} {} orders: {} processed, {} minutes mean queueing delay, {} minutes max queueing delay, {} deadline misses ({} the previous day)",
+                currentDay,
+                priority,
+                latencyStatistics.getOrders(priority),
+                latencyStatistics.getMeanQueueingDelay(priority),
+                latencyStatistics.getMaxQueueingDelay(priority),
+                latencyStatistics.getDeadlineMisses(priority),
+                previousDayLatencyStatistics.getDeadlineMisses(priority));
+        }
+
+        previousDayDispatchStatistics = dispatchStatistics;
+        dispatchStatistics = new DispatchStatistics();
+        previousDayLatencyStatistics = latencyStatistics;
+        latencyStatistics = new LatencyStatistics();
+    }
+
+    /**
+     * Returns the time orders are dispatched at: the end of the current day
+     * while finishDay() dispatches the orders left in it, now otherwise
+     */
+    private long getDispatchTime() {
+        return finishingDay ? (long) (currentDay + 1) * MINUTES_PER_DAY : getCurrentTime();
+    }
+
+    /**
+     * Returns a warehouse this instance can modify in place, copying the
+     * given one and replacing it in the stores if it is shared with a fork.
+     */
+    private Warehouse writable(Warehouse warehouse) {
+        Warehouse owned = ownedIndexedCopy(warehouse);
+        if (owned != warehouse) stores.replace(warehouse, owned);
+        return owned;
+    }
+
+    /**
+     * Same as ownedCopy(), also replacing a copied warehouse in the product
+     * collections. The caller replaces it in the stores.
+     */
+    private Warehouse ownedIndexedCopy(Warehouse warehouse) {
+        Warehouse owned = ownedCopy(warehouse);
+        if (owned == warehouse) return owned;
+
+        warehouseList.set(warehousePositions.get(owned.getIdentifier().getId()), owned);
+        warehousesView = null;
+        for (Product product : warehouse.getProducts()) {
+            if (warehouse.getAvailableBatches(product) > 0) {
+                productStores.get(product).replace(warehouse, owned);
+            }
+        }
+        return owned;
+    }
+
+    private Warehouse ownedCopy(Warehouse warehouse) {
+        if (ownedWarehouses == null || ownedWarehouses.contains(warehouse)) return warehouse;
+
+        Warehouse copy = warehouse.copy();
+        copy.setInventoryListener(inventoryAggregates);
+        ownedWarehouses.add(copy);
+        return copy;
+    }
+
+    /**
+     * Adds the stock of a warehouse new to this distributor to the totals
+     * and to the product collections
+     */
+    private void indexWarehouse(Warehouse warehouse) {
+        int stock;
+        for (Product product : warehouse.getProducts()) {
+            stock = warehouse.getAvailableBatches(product);
+            if (stock <= 0) continue;
+
+            availableBatches += stock;
+            availableBatchesByProduct.merge(product, stock, Integer::sum);
+            productStores.computeIfAbsent(product, p -> storesFactory.get()).add(warehouse);
+        }
+        warehouseStock.set(warehousePositions.get(warehouse.getIdentifier().getId()), warehouse.getAvailableBatches());
+        warehouseStockView = null;
+    }
+
+    /**
+     * Appends a warehouse new to this distributor to the lists the
+     * snapshots are taken from
+     */
+    private void listWarehouse(Warehouse warehouse) {
+        if (warehousePositionsShared) {
+            warehousePositions = new HashMap<>(warehousePositions);
+            warehousePositionsShared = false;
+        }
+        warehousePositions.put(warehouse.getIdentifier().getId(), warehouseList.size());
+        warehouseList.add(warehouse);
+        warehouseStock.add(0);
+        warehousesView = null;
+    }
+
+    /**
+     * Updates the totals after the stock of a product in a warehouse
+     * changed by delta, adding the warehouse to the product collection when
+     * it starts stocking the product and removing it once it runs out of it
+     */
+    private void updateStock(Warehouse warehouse, Product product, int delta) {
+        if (delta == 0) return;
+
+        availableBatches += delta;
+        availableBatchesByProduct.merge(product, delta, Integer::sum);
+        warehouseStock.set(warehousePositions.get(warehouse.getIdentifier().getId()), warehouse.getAvailableBatches());
+        warehouseStockView = null;
+
+        int stock = warehouse.getAvailableBatches(product);
+        if (delta > 0 && stock == delta) {
+            productStores.computeIfAbsent(product, p -> storesFactory.get()).add(warehouse);
+        } else if (delta < 0 && stock == 0) {
+            productStores.get(product).remove(warehouse);
+        }
     }
 
     private void setPreviousDayOrders() {
-        previousDayOrders = new ArrayList<>(currentDayOrders);
-        currentDayOrders = new ArrayList<>();
+        previousDayOrders = currentDayOrders;
+        currentDayOrders = new AppendOnlyList<>();
+        previousDayStatuses = currentDayStatuses;
+        currentDayStatuses = new ChunkedList<>();
+        previousDayPositions = currentDayPositions;
+        currentDayPositions = new HashMap<>();
+    }
+
+    /**
+     * Publishes a new snapshot. The warehouse list and their stock are
+     * reused from the previous snapshot unless they changed since; the
+     * order statuses and changed lists only copy their changed chunks.
+     */
+    private void publishSnapshot() {
+        if (warehousesView == null) warehousesView = warehouseList.view();
+        if (warehouseStockView == null) warehouseStockView = warehouseStock.view();
+
+        DistributorSnapshot previous = snapshot;
+        snapshot = new DistributorSnapshot(
+            previous == null ? 0 : previous.getVersion() + 1,
+            currentDay,
+            getCurrentTime(),
+            warehousesView,
+            warehouseStockView,
+            availableBatches,
+            currentDayStatuses.view(),
+            previousDayStatuses.view());
     }
 }
@@ -0,0 +1,85 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+import vaccinesdistribution.Interface.SpatialCollection;
+import vaccinesdistribution.Interface.WarehouseSource;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Util.ArraySpatialCollection;
+
+/**
+ * Settings a distributor is created with: where its warehouses are loaded
+ * from, the spatial collection the warehouses are indexed with and the
+ * number of closest warehouses an order is first searched among.
+ *
+ * Distributors created from configurations share no mutable state, so
+ * several of them, e.g. one per region, can run on different threads.
+ */
+public class DistributorConfiguration {
+    public static final int DEFAULT_CLOSEST_NEIGHBOURS_SIZE = 5;
+
+    private final WarehouseSource warehouseSource;
+    private final Supplier<SpatialCollection<Warehouse>> storesFactory;
+    private final int closestNeighboursSize;
+
+    public DistributorConfiguration(WarehouseSource warehouseSource) {
+        this(warehouseSource, ArraySpatialCollection::new, DEFAULT_CLOSEST_NEIGHBOURS_SIZE);
+    }
+
+    /**
+     * @param warehouseSource the source of the initial warehouses
+     * @param storesFactory creates the empty spatial collections the
+     *     warehouses are indexed with, one per product plus one for all
+     *     of them. It is called again by forks, so it must not return
+     *     shared collections.
+     * @param closestNeighboursSize number of closest warehouses searched
+     *     first for an order, doubled until the order is served
+     */
+    public DistributorConfiguration(
+        WarehouseSource warehouseSource,
+        Supplier<SpatialCollection<Warehouse>> storesFactory,
+        int closestNeighboursSize
+    ) {
+        if (warehouseSource == null) {
+            throw new IllegalArgumentException("Warehouse source cannot be null");
+        }
+        if (storesFactory == null) {
+            throw new IllegalArgumentException("Stores factory cannot be null");
+        }
+        if (closestNeighboursSize <= 0) {
+            throw new IllegalArgumentException("Closest neighbours size must be positive");
+        }
+        this.warehouseSource = warehouseSource;
+        this.storesFactory = storesFactory;
+        this.closestNeighboursSize = closestNeighboursSize;
+    }
+
+    /**
+     * Returns the default configuration for the warehouses stored in a
+     * JSON file, see Storage.loadWarehousesFromJsonFile()
+     */
+    public static DistributorConfiguration fromFile(String filePath) {
+        return new DistributorConfiguration(() -> Storage.loadWarehousesFromJsonFile(filePath));
+    }
+
+    /**
+     * Returns the default configuration of a distributor starting without
+     * warehouses
+     */
+    public static DistributorConfiguration empty() {
+        return new DistributorConfiguration(ArrayList::new);
+    }
+
+    public WarehouseSource getWarehouseSource() {
+        return warehouseSource;
+    }
+
+    public Supplier<SpatialCollection<Warehouse>> getStoresFactory() {
+        return storesFactory;
+    }
+
+    public int getClosestNeighboursSize() {
+        return closestNeighboursSize;
+    }
+}
@@ -0,0 +1,124 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vaccinesdistribution.Model.OrderStatus;
+import vaccinesdistribution.Model.Warehouse;
+
+/**
+ * Immutable view of a distributor published after every change, to be read
+ * from any thread without copying and without blocking the distributor.
+ *
+ * The lists cannot be modified and never change once published. Orders are
+ * published as immutable statuses. The warehouses are the live ones, so
+ * the stock of a warehouse at the time of the snapshot must be read with
+ * getAvailableBatches(int) rather than from the warehouse itself.
+ */
+public final class DistributorSnapshot {
+    private final long version;
+    private final int day;
+    private final long time;
+    private final List<Warehouse> warehouses;
+    // Available vaccines of every warehouse, in the order of warehouses
+    private final List<Integer> warehouseStock;
+    private final int availableBatches;
+    private final List<OrderStatus> currentDayOrders;
+    private final List<OrderStatus> previousDayOrders;
+
+    DistributorSnapshot(
+        long version,
+        int day,
+        long time,
+        List<Warehouse> warehouses,
+        List<Integer> warehouseStock,
+        int availableBatches,
+        List<OrderStatus> currentDayOrders,
+        List<OrderStatus> previousDayOrders
+    ) {
+        this.version = version;
+        this.day = day;
+        this.time = time;
+        this.warehouses = warehouses;
+        this.warehouseStock = warehouseStock;
+        this.availableBatches = availableBatches;
+        this.currentDayOrders = currentDayOrders;
+        this.previousDayOrders = previousDayOrders;
+    }
+
+    /**
+     * Returns the version of this snapshot. Every snapshot published by a
+     * distributor has a greater version than the previous one.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public List<Warehouse> getWarehouses() {
+        return warehouses;
+    }
+
+    /**
+     * Returns the available vaccines of a warehouse when the snapshot was
+     * published
+     * @param warehouseIndex the index of the warehouse in getWarehouses()
+     */
+    public int getAvailableBatches(int warehouseIndex) {
+        return warehouseStock.get(warehouseIndex);
+    }
+
+    public int getAvailableBatches() {
+        return availableBatches;
+    }
+
+    public List<OrderStatus> getCurrentDayOrders() {
+        return currentDayOrders;
+    }
+
+    public List<OrderStatus> getPreviousDayOrders() {
+        return previousDayOrders;
+    }
+
+    /**
+     * Returns the orders placed after an older snapshot of the same
+     * distributor was published, in placement order
+     * @param snapshot the older snapshot
+     * @throws IllegalArgumentException if the snapshot is from before the previous day
+     */
+    public List<OrderStatus> getOrdersSince(DistributorSnapshot snapshot) {
+        int seen = snapshot.currentDayOrders.size();
+        if (snapshot.day == day) {
+            return currentDayOrders.subList(seen, currentDayOrders.size());
+        }
+        if (snapshot.day != day - 1) {
+            throw new IllegalArgumentException("Snapshot of day " + snapshot.day + " is older than the previous day");
+        }
+
+        // The orders of that day are now the previous day orders
+        List<OrderStatus> orders = new ArrayList<>(previousDayOrders.size() - seen + currentDayOrders.size());
+        orders.addAll(previousDayOrders.subList(seen, previousDayOrders.size()));
+        orders.addAll(currentDayOrders);
+        return orders;
+    }
+
+    @Override
+    public String toString() {
+        return "DistributorSnapshot{" +
+            "version=" + version +
+            ", day=" + day +
+            ", time=" + time +
+            ", warehouses=" + warehouses.size() +
+            ", availableBatches=" + availableBatches +
+            ", currentDayOrders=" + currentDayOrders.size() +
+            ", previousDayOrders=" + previousDayOrders.size() +
+            '}';
+    }
+}
@@ -0,0 +1,100 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import vaccinesdistribution.Interface.InventoryListener;
+import vaccinesdistribution.Interface.Locatable;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Util.Point;
+import vaccinesdistribution.Util.PointFenwickTree;
+import vaccinesdistribution.Util.SparsePointSums;
+
+/**
+ * Aggregated stock per warehouse location, kept up to date incrementally by
+ * the warehouses it listens to. Answers "how many vaccines are stored in
+ * this rectangle" in O(log^2 n) and "how many of them expire between two
+ * dates" in O(d log^3 k), d being the number of distinct expiration dates
+ * in the range and k the number of locations holding stock of one date.
+ *
+ * The total stock takes O(n log n) longs for n warehouses. Every
+ * expiration date has its own tree over only the locations holding stock
+ * of that date, so the per date trees take O(e log e) longs overall, e
+ * being the number of (location, expiration date) pairs with stock,
+ * instead of O(n log n) longs per date.
+ */
+public class InventoryAggregates implements InventoryListener {
+    private PointFenwickTree tree;
+    private long[] totalStock;
+    private TreeMap<Integer, SparsePointSums> stockByExpiration = new TreeMap<>();
+    // Buckets are compacted once at the end of a rebuild
+    private boolean rebuilding;
+
+    public InventoryAggregates(List<Warehouse> warehouses) {
+        rebuild(warehouses);
+    }
+
+    /**
+     * Recomputes the aggregates from scratch. Needed whenever a warehouse
+     * is added at a location that was not indexed.
+     * @param warehouses all the warehouses of the system
+     */
+    public void rebuild(List<Warehouse> warehouses) {
+        List<Point> locations = new ArrayList<>(warehouses.size());
+        for (Warehouse warehouse : warehouses) {
+            locations.add(warehouse.getLocation());
+        }
+
+        tree = new PointFenwickTree(locations);
+        totalStock = tree.newValues();
+        stockByExpiration = new TreeMap<>();
+        rebuilding = true;
+        for (Warehouse warehouse : warehouses) {
+            warehouse.reportInventory(this);
+        }
+        rebuilding = false;
+        for (SparsePointSums bucket : stockByExpiration.values()) {
+            bucket.compact();
+        }
+    }
+
+    @Override
+    public void onStockChanged(Locatable item, int expirationDate, int delta) {
+        if (delta == 0) return;
+
+        tree.add(totalStock, item.getLocation(), delta);
+
+        SparsePointSums bucket = stockByExpiration.get(expirationDate);
+        if (bucket == null) {
+            bucket = new SparsePointSums();
+            stockByExpiration.put(expirationDate, bucket);
+        }
+        bucket.add(item.getLocation(), delta);
+        if (bucket.getTotal() == 0) stockByExpiration.remove(expirationDate);
+        else if (!rebuilding) bucket.compactIfNeeded();
+    }
+
+    /**
+     * Returns the number of vaccines stored in the warehouses located in
+     * the rectangle, bounds included
+     */
+    public long getStock(int minX, int minY, int maxX, int maxY) {
+        return tree.sum(totalStock, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns the number of vaccines stored in the warehouses located in
+     * the rectangle whose expiration date is between fromDate and toDate,
+     * bounds included
+     */
+    public long getStockExpiringBetween(int minX, int minY, int maxX, int maxY, int fromDate, int toDate) {
+        if (fromDate > toDate) return 0;
+
+        long total = 0;
+        for (SparsePointSums bucket : stockByExpiration.subMap(fromDate, true, toDate, true).values()) {
+            total += bucket.sum(minX, minY, maxX, maxY);
+        }
+        return total;
+    }
+}
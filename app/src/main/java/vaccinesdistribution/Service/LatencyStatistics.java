@@ -0,0 +1,68 @@
+package vaccinesdistribution.Service;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.OrderPriority;
+
+/**
+ * Queueing delay and deadline misses of the orders of every priority lane.
+ * The queueing delay of an order is the time, in minutes, between its
+ * placement and its dispatch. An order misses its deadline if it is
+ * dispatched after it or rejected.
+ */
+public class LatencyStatistics {
+    private final long[] orders = new long[OrderPriority.values().length];
+    private final long[] totalDelay = new long[orders.length];
+    private final long[] maxDelay = new long[orders.length];
+    private final long[] deadlineMisses = new long[orders.length];
+
+    /**
+     * @param order the dispatched or rejected order
+     * @param dispatchTime the time at which it left the queue
+     */
+    public void recordOrder(Order order, long dispatchTime) {
+        int lane = order.getPriority().ordinal();
+        long delay = dispatchTime - order.getPlacementTime();
+
+        orders[lane]++;
+        totalDelay[lane] += delay;
+        maxDelay[lane] = Math.max(maxDelay[lane], delay);
+        if (order.isRejected() || dispatchTime > order.getDeadline()) deadlineMisses[lane]++;
+    }
+
+    public long getOrders(OrderPriority priority) {
+        return orders[priority.ordinal()];
+    }
+
+    public double getMeanQueueingDelay(OrderPriority priority) {
+        int lane = priority.ordinal();
+        return orders[lane] == 0 ? 0 : (double) totalDelay[lane] / orders[lane];
+    }
+
+    public long getMaxQueueingDelay(OrderPriority priority) {
+        return maxDelay[priority.ordinal()];
+    }
+
+    public long getDeadlineMisses(OrderPriority priority) {
+        return deadlineMisses[priority.ordinal()];
+    }
+
+    public double getDeadlineMissRate(OrderPriority priority) {
+        int lane = priority.ordinal();
+        return orders[lane] == 0 ? 0 : (double) deadlineMisses[lane] / orders[lane];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LatencyStatistics{");
+        for (OrderPriority priority : OrderPriority.values()) {
+            if (priority.ordinal() > 0) builder.append(", ");
+            builder.append(priority)
+                .append("={orders=").append(getOrders(priority))
+                .append(", meanQueueingDelay=").append(getMeanQueueingDelay(priority))
+                .append(", maxQueueingDelay=").append(getMaxQueueingDelay(priority))
+                .append(", deadlineMisses=").append(getDeadlineMisses(priority))
+                .append('}');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,74 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.Product;
+import vaccinesdistribution.Util.GridCells;
+
+/**
+ * Groups orders of the same product whose delivery locations fall in the
+ * same square cell of a grid and that were placed within a time window of
+ * the first order of the group. Orders of a group can be served together, with a single search
+ * of the closest stores and a single draw from the warehouses.
+ */
+public class OrderCoalescer {
+    private final int cellSize;
+    private final long timeWindow;
+
+    /**
+     * @param cellSize side of the grid cells delivery locations are quantized to
+     * @param timeWindow maximum time, in minutes, between the placement of
+     *     the first and the last order of a group
+     */
+    public OrderCoalescer(int cellSize, long timeWindow) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        if (timeWindow < 0) {
+            throw new IllegalArgumentException("Time window cannot be negative");
+        }
+        this.cellSize = cellSize;
+        this.timeWindow = timeWindow;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public long getTimeWindow() {
+        return timeWindow;
+    }
+
+    /**
+     * Groups the orders, which should be in the order they are served
+     * @param orders the orders to group
+     * @return the groups, sorted by the position of their first order.
+     *     Orders keep their relative order inside a group.
+     */
+    public List<List<Order>> group(Collection<Order> orders) {
+        List<List<Order>> groups = new ArrayList<>();
+        // Last group opened for every cell, per product
+        Map<Product, Map<Long, List<Order>>> openGroups = new HashMap<>();
+
+        long cell;
+        Map<Long, List<Order>> productGroups;
+        List<Order> group;
+        for (Order order : orders) {
+            cell = GridCells.cellKey(order.getDeliveryLocation(), cellSize);
+            productGroups = openGroups.computeIfAbsent(order.getProduct(), product -> new HashMap<>());
+            group = productGroups.get(cell);
+            if (group == null || Math.abs(order.getPlacementTime() - group.get(0).getPlacementTime()) > timeWindow) {
+                group = new ArrayList<>();
+                groups.add(group);
+                productGroups.put(cell, group);
+            }
+            group.add(order);
+        }
+        return groups;
+    }
+}
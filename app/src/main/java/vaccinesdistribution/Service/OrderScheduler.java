@@ -0,0 +1,185 @@
+package vaccinesdistribution.Service;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.OrderPriority;
+
+/**
+ * Queue of pending orders with one lane per priority. Orders are served in
+ * earliest deadline first order across all lanes; on equal deadlines the
+ * lane with the higher priority goes first.
+ *
+ * To keep a lane from starving while orders with earlier deadlines keep
+ * arriving in other lanes, every time a non-empty lane is passed over its
+ * skip count grows, and once it reaches the starvation limit the lane is
+ * served next regardless of deadlines.
+ */
+public class OrderScheduler extends AbstractQueue<Order> {
+    public static final int DEFAULT_STARVATION_LIMIT = 16;
+    private static final OrderPriority[] PRIORITIES = OrderPriority.values();
+
+    private static final Comparator<Order> BY_DEADLINE = Comparator
+        .comparingLong(Order::getDeadline)
+        .thenComparingInt(Order::getId);
+
+    private final Map<OrderPriority, PriorityQueue<Order>> lanes = new EnumMap<>(OrderPriority.class);
+    // Consecutive times every lane was passed over while not empty
+    private final int[] skips = new int[PRIORITIES.length];
+    private int starvationLimit;
+    private int size;
+
+    public OrderScheduler() {
+        this(DEFAULT_STARVATION_LIMIT);
+    }
+
+    /**
+     * @param starvationLimit number of consecutive times a non-empty lane
+     *     can be passed over before it is served
+     */
+    public OrderScheduler(int starvationLimit) {
+        setStarvationLimit(starvationLimit);
+        for (OrderPriority priority : PRIORITIES) {
+            lanes.put(priority, new PriorityQueue<>(BY_DEADLINE));
+        }
+        size = 0;
+    }
+
+    public int getStarvationLimit() {
+        return starvationLimit;
+    }
+
+    public void setStarvationLimit(int starvationLimit) {
+        if (starvationLimit <= 0) {
+            throw new IllegalArgumentException("Starvation limit must be positive");
+        }
+        this.starvationLimit = starvationLimit;
+    }
+
+    /**
+     * Returns the number of orders waiting in a lane
+     */
+    public int size(OrderPriority priority) {
+        return lanes.get(priority).size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean offer(Order order) {
+        lanes.get(order.getPriority()).add(order);
+        size++;
+        return true;
+    }
+
+    @Override
+    public Order poll() {
+        OrderPriority next = nextLane();
+        if (next == null) return null;
+
+        for (OrderPriority priority : PRIORITIES) {
+            if (priority == next) skips[priority.ordinal()] = 0;
+            else if (!lanes.get(priority).isEmpty()) skips[priority.ordinal()]++;
+        }
+        size--;
+        return lanes.get(next).poll();
+    }
+
+    @Override
+    public Order peek() {
+        OrderPriority next = nextLane();
+        return next == null ? null : lanes.get(next).peek();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Order)) return false;
+        if (!lanes.get(((Order) o).getPriority()).remove(o)) return false;
+
+        size--;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (PriorityQueue<Order> lane : lanes.values()) {
+            lane.clear();
+        }
+        for (int i = 0; i < skips.length; i++) {
+            skips[i] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over the pending orders, lane by lane from the
+     * highest priority. Orders of a lane are in no particular order.
+     */
+    @Override
+    public Iterator<Order> iterator() {
+        List<Iterator<Order>> iterators = new ArrayList<>(PRIORITIES.length);
+        for (OrderPriority priority : PRIORITIES) {
+            iterators.add(lanes.get(priority).iterator());
+        }
+
+        return new Iterator<>() {
+            private int lane = 0;
+            private Iterator<Order> last;
+
+            @Override
+            public boolean hasNext() {
+                while (lane < iterators.size() && !iterators.get(lane).hasNext()) lane++;
+                return lane < iterators.size();
+            }
+
+            @Override
+            public Order next() {
+                hasNext();
+                if (lane == iterators.size()) throw new NoSuchElementException();
+                last = iterators.get(lane);
+                return last.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+                last.remove();
+                last = null;
+                size--;
+            }
+        };
+    }
+
+    private OrderPriority nextLane() {
+        OrderPriority starved = null;
+        OrderPriority earliest = null;
+        Order head;
+        int laneSkips;
+        for (OrderPriority priority : PRIORITIES) {
+            head = lanes.get(priority).peek();
+            if (head == null) continue;
+
+            // The most starved lane goes first
+            laneSkips = skips[priority.ordinal()];
+            if (laneSkips >= starvationLimit && (starved == null || laneSkips > skips[starved.ordinal()])) {
+                starved = priority;
+            }
+            // Lanes are visited from the highest priority, which wins ties
+            if (earliest == null || head.getDeadline() < lanes.get(earliest).peek().getDeadline()) {
+                earliest = priority;
+            }
+        }
+        return starved != null ? starved : earliest;
+    }
+}
@@ -0,0 +1,36 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import vaccinesdistribution.Interface.Perishable;
+import vaccinesdistribution.Interface.SpatialCollection;
+import vaccinesdistribution.Model.Warehouse;
+
+/**
+ * Sends every batch to a warehouse chosen uniformly at random
+ */
+public class RandomReplenishment implements ReplenishmentStrategy {
+    private final Random random = new Random();
+
+    @Override
+    public List<Warehouse> place(List<? extends Perishable> batches, SpatialCollection<Warehouse> stores) {
+        List<Warehouse> warehouseList = stores.getItems();
+        List<Warehouse> targets = new ArrayList<>(batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            targets.add(warehouseList.get(random.nextInt(warehouseList.size())));
+        }
+        return targets;
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public ReplenishmentStrategy fork() {
+        return new RandomReplenishment();
+    }
+}
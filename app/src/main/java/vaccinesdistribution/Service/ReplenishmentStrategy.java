@@ -0,0 +1,40 @@
+package vaccinesdistribution.Service;
+
+import java.util.List;
+
+import vaccinesdistribution.Interface.Perishable;
+import vaccinesdistribution.Interface.SpatialCollection;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Util.Point;
+
+public interface ReplenishmentStrategy {
+    /**
+     * Chooses the warehouse that will receive each of the incoming batches.
+     * The batches are not registered by this method.
+     * @param batches the batches to place
+     * @param stores the warehouses of the system, must not be empty
+     * @return the target warehouse of each batch, in the same order as batches
+     */
+    List<Warehouse> place(List<? extends Perishable> batches, SpatialCollection<Warehouse> stores);
+
+    /**
+     * Name used to identify the strategy in reports
+     */
+    String getName();
+
+    /**
+     * Called every time an order is placed
+     */
+    default void recordDemand(Point deliveryLocation, int quantity) {}
+
+    /**
+     * Called once at the end of every day
+     */
+    default void finishDay() {}
+
+    /**
+     * Returns a strategy with the same configuration and an independent
+     * copy of any state, to be used by a fork of the distributor
+     */
+    ReplenishmentStrategy fork();
+}
@@ -0,0 +1,77 @@
+package vaccinesdistribution.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import vaccinesdistribution.Model.Product;
+import vaccinesdistribution.Model.Reservation;
+import vaccinesdistribution.Model.Warehouse;
+
+/**
+ * Quantities reserved by the plans of one two-phase dispatch, by warehouse
+ * id and product, and a version per warehouse bumped by every commit from
+ * it. Kept out of the warehouses, which may be shared with forks of the
+ * distributor, so that planning only reads them.
+ *
+ * Reservations can be made and released from several threads at once;
+ * commits are made from a single thread while nothing is being planned.
+ */
+class ReservationTable {
+    private final Map<Key, Integer> reserved = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Sets aside up to the given quantity of a product in a warehouse
+     * @return the reservation, for at most the unreserved quantity of the
+     *     product, or null if there is nothing left to reserve
+     */
+    Reservation reserve(Warehouse warehouse, Product product, int quantity) {
+        int available = warehouse.getAvailableBatches(product);
+        int[] granted = new int[1];
+        reserved.compute(new Key(warehouse.getIdentifier().getId(), product), (key, held) -> {
+            int current = held == null ? 0 : held;
+            granted[0] = Math.min(quantity, available - current);
+            return granted[0] > 0 ? current + granted[0] : held;
+        });
+        if (granted[0] <= 0) return null;
+
+        return new Reservation(warehouse, product, granted[0], getVersion(warehouse));
+    }
+
+    void release(Reservation reservation) {
+        reserved.computeIfPresent(key(reservation), (key, held) ->
+            held == reservation.quantity() ? null : held - reservation.quantity());
+    }
+
+    long getVersion(Warehouse warehouse) {
+        return versions.getOrDefault(warehouse.getIdentifier().getId(), 0L);
+    }
+
+    /**
+     * Returns whether the reserved quantity is still available, i.e. nothing
+     * was committed from the warehouse since it was made
+     */
+    boolean isValid(Reservation reservation) {
+        return reservation.version() == getVersion(reservation.warehouse());
+    }
+
+    /**
+     * Releases a reservation whose quantity is about to be dispatched,
+     * outdating the other reservations of the warehouse
+     * @throws IllegalStateException if the reservation is no longer valid
+     */
+    void commit(Reservation reservation) {
+        if (!isValid(reservation)) {
+            throw new IllegalStateException("Reservation made at version " + reservation.version()
+                + " is outdated, current version is " + getVersion(reservation.warehouse()));
+        }
+        release(reservation);
+        versions.merge(reservation.warehouse().getIdentifier().getId(), 1L, Long::sum);
+    }
+
+    private static Key key(Reservation reservation) {
+        return new Key(reservation.warehouse().getIdentifier().getId(), reservation.product());
+    }
+
+    private record Key(int warehouseId, Product product) {}
+}
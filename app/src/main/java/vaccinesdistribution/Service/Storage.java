@@ -18,6 +18,7 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
+import vaccinesdistribution.Model.Product;
 import vaccinesdistribution.Model.Warehouse;
 import vaccinesdistribution.Model.WarehouseIdentifier;
 import vaccinesdistribution.Model.VaccineBatch;
@@ -77,6 +78,7 @@ public class Storage {
             JsonArray vaccineBatchesArray = jsonObject.getAsJsonArray("vaccine_batches");
 
             VaccineBatch batch;
+            Product product;
             JsonObject batchObject;
             int batchSize, expirationDate;
             for (JsonElement element : vaccineBatchesArray) {
@@ -94,7 +96,12 @@ public class Storage {
                 batchSize = batchObject.get("batch_size").getAsInt();
                 expirationDate = batchObject.get("expiration_date").getAsInt();
                 
-                batch = new VaccineBatch(batchSize, expirationDate);
+                // Batches without a product are of the default vaccine
+                product = batchObject.has("product")
+                    ? Product.of(batchObject.get("product").getAsString())
+                    : Product.DEFAULT;
+
+                batch = new VaccineBatch(product, batchSize, expirationDate);
                 warehouse.registerPerishableBatch(batch);
             }
     
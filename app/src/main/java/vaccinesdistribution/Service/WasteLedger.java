@@ -0,0 +1,236 @@
+package vaccinesdistribution.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+import vaccinesdistribution.Interface.Perishable;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Util.SparsePointSums;
+
+/**
+ * Record of the vaccines that expired before being dispatched.
+ *
+ * Expired quantities are aggregated in primitive counters per warehouse,
+ * per day and per warehouse and day, and per day in a tree over the
+ * locations of the warehouses that wasted vaccines that day, so region
+ * queries take O(log^2 k) per day of the range. The expired batches themselves are
+ * only kept for the last few days; older ones are dropped or, if a spill
+ * file is configured, appended to it as CSV lines
+ * ({@code day,warehouseId,batchId,quantity,expirationDate}).
+ */
+public class WasteLedger {
+    private static final Logger logger = LogManager.getLogger(WasteLedger.class);
+
+    public static final int DEFAULT_DETAIL_WINDOW_DAYS = 7;
+
+    private final int detailWindowDays;
+    private final Path spillFile;
+
+    private long totalWaste;
+    // Indexed by day
+    private long[] wasteByDay = new long[64];
+    // Indexed by warehouse id
+    private long[] wasteByWarehouse = new long[16];
+    // Only the days with waste are stored for each warehouse
+    private DailyWaste[] wasteByWarehouseAndDay = new DailyWaste[16];
+    // Waste per warehouse location, indexed by day
+    private SparsePointSums[] wasteByDayAndLocation = new SparsePointSums[64];
+
+    private final Deque<ExpiredBatch> recentBatches = new ArrayDeque<>();
+
+    public WasteLedger() {
+        this(DEFAULT_DETAIL_WINDOW_DAYS, null);
+    }
+
+    /**
+     * @param detailWindowDays number of days expired batches are kept in detail
+     * @param spillFile file to append older expired batches to, or null to drop them
+     */
+    public WasteLedger(int detailWindowDays, Path spillFile) {
+        if (detailWindowDays < 0) {
+            throw new IllegalArgumentException("Detail window cannot be negative");
+        }
+        this.detailWindowDays = detailWindowDays;
+        this.spillFile = spillFile;
+        this.totalWaste = 0;
+    }
+
+    public int getDetailWindowDays() {
+        return detailWindowDays;
+    }
+
+    public void record(Warehouse warehouse, int day, List<Perishable> expiredBatches) {
+        if (expiredBatches.isEmpty()) return;
+
+        int warehouseId = warehouse.getIdentifier().getId();
+        DailyWaste warehouseWaste = warehouseDays(warehouseId);
+        if (day >= wasteByDay.length) {
+            int length = Math.max(wasteByDay.length * 2, day + 1);
+            wasteByDay = Arrays.copyOf(wasteByDay, length);
+            wasteByDayAndLocation = Arrays.copyOf(wasteByDayAndLocation, length);
+        }
+        if (wasteByDayAndLocation[day] == null) {
+            wasteByDayAndLocation[day] = new SparsePointSums();
+        }
+        SparsePointSums locationWaste = wasteByDayAndLocation[day];
+
+        int quantity;
+        for (Perishable batch : expiredBatches) {
+            quantity = batch.getQuantity();
+            totalWaste += quantity;
+            wasteByDay[day] += quantity;
+            wasteByWarehouse[warehouseId] += quantity;
+            warehouseWaste.add(day, quantity);
+            locationWaste.add(warehouse.getLocation(), quantity);
+            recentBatches.add(new ExpiredBatch(day, warehouseId, batch));
+        }
+    }
+
+    /**
+     * Indexes the locations that wasted vaccines since the last call and
+     * drops or spills the expired batches that are out of the detail window
+     * @param currentDay the current day
+     */
+    public void finishDay(int currentDay) {
+        // Locations are indexed once a day, as rebuilding the tree of a day
+        // on every record would be quadratic; until then region queries
+        // scan them. Waste is recorded during the previous day or right
+        // before this call, so only those two days can have any.
+        for (int day = Math.max(0, currentDay - 1); day <= currentDay && day < wasteByDayAndLocation.length; day++) {
+            if (wasteByDayAndLocation[day] != null) wasteByDayAndLocation[day].compact();
+        }
+
+        int firstKeptDay = currentDay - detailWindowDays;
+        List<ExpiredBatch> evicted = new ArrayList<>();
+        while (!recentBatches.isEmpty() && recentBatches.peek().day() < firstKeptDay) {
+            evicted.add(recentBatches.poll());
+        }
+        if (evicted.isEmpty() || spillFile == null) return;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(
+                spillFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ExpiredBatch expired : evicted) {
+                writer.write(expired.day() + "," + expired.warehouseId() + "," + expired.batch().getId()
+                        + "," + expired.batch().getQuantity() + "," + expired.batch().getExpirationDate());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to spill {} expired batches to {}", evicted.size(), spillFile, e);
+        }
+    }
+
+    public long getTotalWaste() {
+        return totalWaste;
+    }
+
+    public long getWasteByWarehouse(int warehouseId) {
+        return warehouseId < wasteByWarehouse.length ? wasteByWarehouse[warehouseId] : 0;
+    }
+
+    /**
+     * Returns the waste recorded between the two days, both included
+     */
+    public long getWasteBetween(int fromDay, int toDay) {
+        return sumDays(wasteByDay, fromDay, toDay);
+    }
+
+    public long getWasteByWarehouseBetween(int warehouseId, int fromDay, int toDay) {
+        if (warehouseId >= wasteByWarehouseAndDay.length || wasteByWarehouseAndDay[warehouseId] == null) return 0;
+        return wasteByWarehouseAndDay[warehouseId].sum(fromDay, toDay);
+    }
+
+    /**
+     * Returns the waste recorded between the two days, both included, by
+     * the warehouses located in the rectangle, bounds included
+     */
+    public long getWasteInRegionBetween(int minX, int minY, int maxX, int maxY, int fromDay, int toDay) {
+        long waste = 0;
+        for (int day = Math.max(0, fromDay); day <= toDay && day < wasteByDayAndLocation.length; day++) {
+            if (wasteByDayAndLocation[day] == null) continue;
+            waste += wasteByDayAndLocation[day].sum(minX, minY, maxX, maxY);
+        }
+        return waste;
+    }
+
+    /**
+     * Returns the expired batches kept in detail, oldest first
+     */
+    public List<ExpiredBatch> getRecentBatches() {
+        return new ArrayList<>(recentBatches);
+    }
+
+    public record ExpiredBatch(int day, int warehouseId, Perishable batch) {}
+
+    // Waste per day of the warehouse, with room for the given day
+    private DailyWaste warehouseDays(int warehouseId) {
+        if (warehouseId >= wasteByWarehouse.length) {
+            int length = Math.max(wasteByWarehouse.length * 2, warehouseId + 1);
+            wasteByWarehouse = Arrays.copyOf(wasteByWarehouse, length);
+            wasteByWarehouseAndDay = Arrays.copyOf(wasteByWarehouseAndDay, length);
+        }
+        if (wasteByWarehouseAndDay[warehouseId] == null) {
+            wasteByWarehouseAndDay[warehouseId] = new DailyWaste();
+        }
+        return wasteByWarehouseAndDay[warehouseId];
+    }
+
+    private static long sumDays(long[] waste, int fromDay, int toDay) {
+        if (waste == null) return 0;
+
+        long total = 0;
+        for (int day = Math.max(0, fromDay); day <= toDay && day < waste.length; day++) {
+            total += waste[day];
+        }
+        return total;
+    }
+
+    /**
+     * Waste of a warehouse on the days it had any, sorted by day. Days are
+     * recorded in increasing order in practice, so adding is usually an
+     * append.
+     */
+    private static class DailyWaste {
+        private int[] days = new int[4];
+        private long[] amounts = new long[4];
+        private int size;
+
+        private void add(int day, long quantity) {
+            int index = size > 0 && days[size - 1] == day ? size - 1 : Arrays.binarySearch(days, 0, size, day);
+            if (index >= 0) {
+                amounts[index] += quantity;
+                return;
+            }
+
+            index = -index - 1;
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(amounts, index, amounts, index + 1, size - index);
+            days[index] = day;
+            amounts[index] = quantity;
+            size++;
+        }
+
+        private long sum(int fromDay, int toDay) {
+            long total = 0;
+            int index = Arrays.binarySearch(days, 0, size, fromDay);
+            for (index = index >= 0 ? index : -index - 1; index < size && days[index] <= toDay; index++) {
+                total += amounts[index];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package vaccinesdistribution.Util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List that can only grow at its end, written by a single thread.
+ *
+ * Elements are never moved nor overwritten once added: when the backing
+ * array is full a bigger copy replaces it and the old one is left as it
+ * was. A view of the current elements is therefore an immutable prefix of
+ * the list and is taken in constant time, without copying. Views can be
+ * read from other threads once published safely, e.g. through a volatile
+ * field.
+ */
+public class AppendOnlyList<E> {
+    private Object[] elements;
+    private int size;
+
+    public AppendOnlyList() {
+        elements = new Object[16];
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(E e) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = e;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return (E) elements[index];
+    }
+
+    /**
+     * Returns an unmodifiable view of the elements added so far. Elements
+     * added afterwards are not part of the view.
+     */
+    public List<E> view() {
+        return new View<>(elements, size);
+    }
+
+    private static class View<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] elements;
+        private final int size;
+
+        private View(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,39 +1,122 @@
 package vaccinesdistribution.Util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.UnaryOperator;
 
 import vaccinesdistribution.Interface.Locatable;
 import vaccinesdistribution.Interface.SpatialCollection;
 
 public class ArraySpatialCollection<T extends Locatable> implements SpatialCollection<T> {
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
     private List<T> items;
-    
+    // Coordinates of the items packed in the same order as items, so that
+    // distances can be computed without dereferencing every item
+    private int[] xs;
+    private int[] ys;
+    // Index of every item in items, by identity, so that replacing or
+    // removing an item does not scan the collection
+    private Map<T, Integer> positions;
+    // Bounding box of the packed coordinates. It is not shrunk on removal,
+    // it is only used to know whether squared distances fit in an int.
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+    // true while items and coordinates may be referenced by a fork
+    private boolean shared;
+    private int parallelThreshold;
+
     public ArraySpatialCollection() {
         this.items = new ArrayList<>();
+        this.xs = new int[8];
+        this.ys = new int[8];
+        this.positions = new IdentityHashMap<>();
+        this.shared = false;
+        this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+        resetBounds();
+    }
+
+    private ArraySpatialCollection(ArraySpatialCollection<T> collection) {
+        this.items = collection.items;
+        this.xs = collection.xs;
+        this.ys = collection.ys;
+        this.positions = collection.positions;
+        this.minX = collection.minX;
+        this.minY = collection.minY;
+        this.maxX = collection.maxX;
+        this.maxY = collection.maxY;
+        this.shared = true;
+        this.parallelThreshold = collection.parallelThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the collection size from which k closest queries are split in
+     * chunks and scanned in parallel on the common fork-join pool
+     * @param parallelThreshold minimum size to scan in parallel
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold <= 0) {
+            throw new IllegalArgumentException("Parallel threshold must be positive");
+        }
+        this.parallelThreshold = parallelThreshold;
     }
-    
+
     @Override
     public int size() {
         return items.size();
     }
-    
+
     @Override
     public void add(T e) {
+        ensureOwnedItems();
+        if (items.size() == xs.length) {
+            xs = Arrays.copyOf(xs, xs.length * 2);
+            ys = Arrays.copyOf(ys, ys.length * 2);
+        }
+        pack(items.size(), e);
+        positions.put(e, items.size());
         items.add(e);
     }
-    
+
+    /**
+     * Removes the element in O(1) when the collection holds that very
+     * instance, by moving the last item into its slot. Items are not kept
+     * in insertion order.
+     */
     @Override
     public void remove(Object o) {
-        items.remove(o);
+        Integer position = positions.get(o);
+        int index = position != null ? position : items.indexOf(o);
+        if (index < 0) return;
+
+        ensureOwnedItems();
+        int last = items.size() - 1;
+        positions.remove(items.get(index));
+        T moved = items.remove(last);
+        if (index < last) {
+            items.set(index, moved);
+            xs[index] = xs[last];
+            ys[index] = ys[last];
+            positions.put(moved, index);
+        }
     }
-    
+
     @Override
     public List<T> getItems() {
         return new ArrayList<>(items);
     }
-    
+
     @Override
     public List<T> getKClosestItems(Point p, int k) {
         // If k is less than or equal to 0, return an empty list
@@ -41,39 +124,27 @@ public class ArraySpatialCollection<T extends Locatable> implements SpatialColle
         // If k is greater than or equal to the number of items, return all items
         if (k >= items.size()) return getItems();
 
-        // To sort the items by distance, a max-heap is used. The size
-        // of the heap is always limited to k. At any time, the farthest
-        // item (from the current collection) is at the top of the heap.
-        // A new item is added to the heap if it is closer than the
-        // farthest. In that case, the farthest item is removed and the
-        // new item is added.
-        
-        PriorityQueue<ItemWithDistance<T>> maxHeap = new PriorityQueue<>((a, b) -> {
-            return Double.compare(b.distanceToP(), a.distanceToP()); // Reverse order for max-heap
-        });
-        
-        double itemDist;
-        double maxDist;
-        ItemWithDistance<T> itemWithDistance;
-        for (T item : items) {
-            itemDist = p.calculateDistance(item.getLocation());
-            itemWithDistance = new ItemWithDistance<>(item, itemDist);
-            
-            if (maxHeap.size() < k) {
-                maxHeap.offer(itemWithDistance);
-                continue;
-            }
-            
-            maxDist = maxHeap.peek().distanceToP();
-            if (itemDist < maxDist) {
-                maxHeap.poll();
-                maxHeap.offer(itemWithDistance);    
-            }
+        // To sort the items by distance, a max-heap of squared distances
+        // is used. The size of the heap is always limited to k. At any
+        // time, the farthest item (from the current collection) is at the
+        // top of the heap and an item is only added if it is closer than
+        // it. The distances are computed over the packed coordinates, with
+        // SIMD lanes when the Vector API is enabled, and big collections
+        // are split in chunks whose top k are merged at the end.
+        DistanceKernel kernel = squaredDistancesFitInt(p) ? DistanceKernels.PREFERRED : DistanceKernels.SCALAR;
+
+        TopKAccumulator closest;
+        if (items.size() < parallelThreshold) {
+            closest = new TopKAccumulator(k);
+            kernel.scan(xs, ys, 0, items.size(), p.getXCoordinate(), p.getYCoordinate(), closest);
+        } else {
+            closest = ForkJoinPool.commonPool().invoke(
+                new ClosestItemsTask(kernel, p, k, 0, items.size(), chunkSize()));
         }
-        
-        List<T> result = new ArrayList<>();
-        for (ItemWithDistance<T> itemWithDist : maxHeap) {
-            result.add(itemWithDist.item());
+
+        List<T> result = new ArrayList<>(k);
+        for (int i = 0; i < closest.size(); i++) {
+            result.add(items.get(closest.indexAt(i)));
         }
         return result;
     }
@@ -81,7 +152,120 @@ public class ArraySpatialCollection<T extends Locatable> implements SpatialColle
     @Override
     public void setItemsFromList(List<T> items) {
         this.items = new ArrayList<>(items);
+        this.xs = new int[Math.max(8, items.size())];
+        this.ys = new int[Math.max(8, items.size())];
+        this.shared = false;
+        resetBounds();
+        for (int i = 0; i < this.items.size(); i++) {
+            pack(i, this.items.get(i));
+        }
+        indexPositions();
+    }
+
+    @Override
+    public void replace(T old, T replacement) {
+        Integer index = positions.get(old);
+        if (index == null) return;
+
+        ensureOwnedItems();
+        items.set(index, replacement);
+        positions.remove(old);
+        positions.put(replacement, index);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        ensureOwnedItems();
+        items.replaceAll(operator);
+        indexPositions();
+    }
+
+    @Override
+    public SpatialCollection<T> fork() {
+        shared = true;
+        return new ArraySpatialCollection<>(this);
+    }
+
+    private void ensureOwnedItems() {
+        if (!shared) return;
+
+        items = new ArrayList<>(items);
+        xs = xs.clone();
+        ys = ys.clone();
+        positions = new IdentityHashMap<>(positions);
+        shared = false;
+    }
+
+    private void indexPositions() {
+        positions = new IdentityHashMap<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            positions.put(items.get(i), i);
+        }
     }
 
-    private record ItemWithDistance<T extends Locatable>(T item, double distanceToP) {}
+    private void pack(int index, T item) {
+        int x = item.getLocation().getXCoordinate();
+        int y = item.getLocation().getYCoordinate();
+        xs[index] = x;
+        ys[index] = y;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    private void resetBounds() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    private boolean squaredDistancesFitInt(Point p) {
+        long dx = Math.max(Math.abs((long) maxX - p.getXCoordinate()), Math.abs((long) minX - p.getXCoordinate()));
+        long dy = Math.max(Math.abs((long) maxY - p.getYCoordinate()), Math.abs((long) minY - p.getYCoordinate()));
+        return dx * dx + dy * dy <= Integer.MAX_VALUE;
+    }
+
+    private int chunkSize() {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(parallelThreshold / 4, items.size() / (4 * parallelism) + 1);
+    }
+
+    private class ClosestItemsTask extends RecursiveTask<TopKAccumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final DistanceKernel kernel;
+        private final Point p;
+        private final int k;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private ClosestItemsTask(DistanceKernel kernel, Point p, int k, int from, int to, int chunkSize) {
+            this.kernel = kernel;
+            this.p = p;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected TopKAccumulator compute() {
+            if (to - from <= chunkSize) {
+                TopKAccumulator closest = new TopKAccumulator(k);
+                kernel.scan(xs, ys, from, to, p.getXCoordinate(), p.getYCoordinate(), closest);
+                return closest;
+            }
+
+            int middle = (from + to) >>> 1;
+            ClosestItemsTask left = new ClosestItemsTask(kernel, p, k, from, middle, chunkSize);
+            ClosestItemsTask right = new ClosestItemsTask(kernel, p, k, middle, to, chunkSize);
+            left.fork();
+            TopKAccumulator closest = right.compute();
+            closest.merge(left.join());
+            return closest;
+        }
+    }
 }
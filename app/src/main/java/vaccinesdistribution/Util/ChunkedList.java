@@ -0,0 +1,111 @@
+package vaccinesdistribution.Util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List stored in fixed size chunks that are shared copy-on-write between
+ * the list and its copies, written by a single thread.
+ *
+ * copy() only copies the array of chunks, so it takes O(n / CHUNK_SIZE).
+ * Afterwards the list and the copy both copy a chunk before their first
+ * write to it, so taking a copy after a few changes costs little more than
+ * the changes themselves. Views can be read from other threads once
+ * published safely, e.g. through a volatile field.
+ */
+public class ChunkedList<E> {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private Object[][] chunks;
+    // Whether every chunk belongs to this list only and can be written
+    private boolean[] owned;
+    private int size;
+
+    public ChunkedList() {
+        this(new Object[0][], 0);
+    }
+
+    private ChunkedList(Object[][] chunks, int size) {
+        this.chunks = chunks;
+        this.owned = new boolean[chunks.length];
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index);
+        return (E) chunks[index >>> CHUNK_BITS][index & (CHUNK_SIZE - 1)];
+    }
+
+    public void set(int index, E e) {
+        checkIndex(index);
+        writableChunk(index >>> CHUNK_BITS)[index & (CHUNK_SIZE - 1)] = e;
+    }
+
+    public void add(E e) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk + 1);
+            owned = Arrays.copyOf(owned, chunk + 1);
+            chunks[chunk] = new Object[CHUNK_SIZE];
+            owned[chunk] = true;
+        }
+        writableChunk(chunk)[size & (CHUNK_SIZE - 1)] = e;
+        size++;
+    }
+
+    /**
+     * Returns a copy of this list. Changes to either list are not seen by
+     * the other one.
+     */
+    public ChunkedList<E> copy() {
+        Arrays.fill(owned, false);
+        return new ChunkedList<>(chunks.clone(), size);
+    }
+
+    /**
+     * Returns an unmodifiable copy of the elements added so far, see copy()
+     */
+    public List<E> view() {
+        return new View<>(copy());
+    }
+
+    private Object[] writableChunk(int chunk) {
+        if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        return chunks[chunk];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    private static class View<E> extends AbstractList<E> implements RandomAccess {
+        private final ChunkedList<E> list;
+
+        private View(ChunkedList<E> list) {
+            this.list = list;
+        }
+
+        @Override
+        public E get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+}
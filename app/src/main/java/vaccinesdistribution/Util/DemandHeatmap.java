@@ -0,0 +1,74 @@
+package vaccinesdistribution.Util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Demand accumulated over square cells of a grid. Every call to
+ * {@link #decay()} multiplies all the cells by the decay factor, so recent
+ * demand weighs more than old demand. Cells whose demand becomes negligible
+ * are dropped.
+ */
+public class DemandHeatmap {
+    private static final double NEGLIGIBLE_DEMAND = 1e-3;
+
+    private final int cellSize;
+    private final double decayFactor;
+    private Map<Long, Double> cells = new HashMap<>();
+    private double totalDemand;
+
+    /**
+     * @param cellSize side of the grid cells
+     * @param decayFactor factor applied to the demand on every decay, between 0 and 1
+     */
+    public DemandHeatmap(int cellSize, double decayFactor) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        if (decayFactor < 0 || decayFactor > 1) {
+            throw new IllegalArgumentException("Decay factor must be between 0 and 1");
+        }
+        this.cellSize = cellSize;
+        this.decayFactor = decayFactor;
+        this.totalDemand = 0;
+    }
+
+    public DemandHeatmap(DemandHeatmap heatmap) {
+        this.cellSize = heatmap.cellSize;
+        this.decayFactor = heatmap.decayFactor;
+        this.cells = new HashMap<>(heatmap.cells);
+        this.totalDemand = heatmap.totalDemand;
+    }
+
+    public void record(Point location, double demand) {
+        cells.merge(GridCells.cellKey(location, cellSize), demand, Double::sum);
+        totalDemand += demand;
+    }
+
+    public void decay() {
+        totalDemand = 0;
+        cells.replaceAll((key, demand) -> demand * decayFactor);
+        cells.values().removeIf(demand -> demand < NEGLIGIBLE_DEMAND);
+        for (double demand : cells.values()) {
+            totalDemand += demand;
+        }
+    }
+
+    public double getTotalDemand() {
+        return totalDemand;
+    }
+
+    public boolean isEmpty() {
+        return cells.isEmpty();
+    }
+
+    /**
+     * Calls the action with the center of every cell with demand and its demand
+     */
+    public void forEachCell(BiConsumer<Point, Double> action) {
+        for (Map.Entry<Long, Double> cell : cells.entrySet()) {
+            action.accept(GridCells.cellCenter(cell.getKey(), cellSize), cell.getValue());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package vaccinesdistribution.Util;
+
+/**
+ * Computes squared distances from a query point to packed coordinates and
+ * offers the closer ones to a top-k accumulator
+ */
+interface DistanceKernel {
+    /**
+     * Offers to closest every index between from (inclusive) and to
+     * (exclusive) whose squared distance to (px, py) beats the current
+     * k-th best. Squared distances must fit in an int.
+     */
+    void scan(int[] xs, int[] ys, int from, int to, int px, int py, TopKAccumulator closest);
+}
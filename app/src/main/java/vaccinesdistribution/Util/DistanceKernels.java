@@ -0,0 +1,36 @@
+package vaccinesdistribution.Util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Chooses the distance kernel once per JVM: the Vector API kernel when the
+ * jdk.incubator.vector module is enabled (--add-modules
+ * jdk.incubator.vector), the scalar kernel otherwise.
+ */
+final class DistanceKernels {
+    private static final Logger logger = LogManager.getLogger(DistanceKernels.class);
+
+    static final DistanceKernel SCALAR = new ScalarDistanceKernel();
+    static final DistanceKernel PREFERRED = loadPreferred();
+
+    private DistanceKernels() {}
+
+    private static DistanceKernel loadPreferred() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            logger.info("jdk.incubator.vector module not enabled, using scalar distance kernel");
+            return SCALAR;
+        }
+
+        try {
+            DistanceKernel kernel = (DistanceKernel) Class.forName("vaccinesdistribution.Util.VectorDistanceKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            logger.info("Using Vector API distance kernel");
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Vector API distance kernel unavailable, using scalar distance kernel", e);
+            return SCALAR;
+        }
+    }
+}
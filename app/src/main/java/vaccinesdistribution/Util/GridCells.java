@@ -0,0 +1,31 @@
+package vaccinesdistribution.Util;
+
+/**
+ * Square cells of a grid, each identified by a long packing its column
+ * and row, used to quantize locations.
+ */
+public final class GridCells {
+    private GridCells() {}
+
+    /**
+     * Returns the key of the cell holding a location
+     * @param location the location
+     * @param cellSize side of the grid cells
+     */
+    public static long cellKey(Point location, int cellSize) {
+        long cellX = Math.floorDiv(location.getXCoordinate(), cellSize);
+        long cellY = Math.floorDiv(location.getYCoordinate(), cellSize);
+        return (cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the center of the cell with the given key
+     * @param key a key returned by cellKey()
+     * @param cellSize side of the grid cells
+     */
+    public static Point cellCenter(long key, int cellSize) {
+        int cellX = (int) (key >> 32);
+        int cellY = (int) key;
+        return new Point(cellX * cellSize + cellSize / 2, cellY * cellSize + cellSize / 2);
+    }
+}
@@ -0,0 +1,500 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.function.UnaryOperator;
+
+import vaccinesdistribution.Interface.Locatable;
+import vaccinesdistribution.Interface.SpatialCollection;
+
+/**
+ * Spatial collection that keeps its items sorted by the position of their
+ * location along a Hilbert curve, with the coordinates stored in primitive
+ * arrays so that scans are cache friendly.
+ *
+ * By default k closest queries are exact and scan every item. With an
+ * approximation window w > 0 a query only scans the w items at each side of
+ * its own position along the curve. Since the Hilbert curve preserves
+ * locality those are usually close to the query point, but some of the
+ * true k closest items may be missed. Use
+ * {@link #measureApproximation(List, int)} to measure the recall and
+ * latency of a given window.
+ *
+ * Added items wait in a pending list scanned by every query, and removed
+ * items leave an empty slot in the sorted arrays. Both are merged back in
+ * a single pass once there are more than about sqrt(n) pending items or
+ * n / 4 empty slots, so adds take O(sqrt(n)) amortized and removals O(1).
+ */
+public class HilbertSpatialCollection<T extends Locatable> implements SpatialCollection<T> {
+    // Side of the Hilbert grid is 2^ORDER cells
+    private static final int ORDER = 16;
+    private static final int GRID_SIDE = 1 << ORDER;
+    // Changes always kept before merging them into the sorted arrays
+    private static final int MIN_BATCH = 64;
+
+    // Sorted by key, with null items in the slots of removed ones
+    private Object[] items;
+    private long[] keys;
+    private int[] xs;
+    private int[] ys;
+    private int slots;
+    private int removed;
+    // Added since the last merge, in no particular order
+    private List<Object> pending;
+    private int size;
+    // Slot of every item, or -1 - index for the pending ones, by identity so
+    // that replacing or removing an item does not scan the collection
+    private Map<Object, Integer> positions;
+    // true while the arrays may be referenced by a fork of this collection
+    private boolean shared;
+
+    // Bounding box mapped to the Hilbert grid
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+    private int shift;
+
+    private int approximationWindow;
+
+    public HilbertSpatialCollection() {
+        this(0);
+    }
+
+    /**
+     * @param approximationWindow number of items scanned at each side of the
+     *     query position, 0 for exact queries
+     */
+    public HilbertSpatialCollection(int approximationWindow) {
+        setApproximationWindow(approximationWindow);
+        rebuild(new Object[0], 0);
+    }
+
+    private HilbertSpatialCollection(HilbertSpatialCollection<T> collection) {
+        items = collection.items;
+        keys = collection.keys;
+        xs = collection.xs;
+        ys = collection.ys;
+        slots = collection.slots;
+        removed = collection.removed;
+        pending = collection.pending;
+        size = collection.size;
+        positions = collection.positions;
+        shared = true;
+        minX = collection.minX;
+        minY = collection.minY;
+        maxX = collection.maxX;
+        maxY = collection.maxY;
+        shift = collection.shift;
+        approximationWindow = collection.approximationWindow;
+    }
+
+    public int getApproximationWindow() {
+        return approximationWindow;
+    }
+
+    public void setApproximationWindow(int approximationWindow) {
+        if (approximationWindow < 0) {
+            throw new IllegalArgumentException("Approximation window cannot be negative");
+        }
+        this.approximationWindow = approximationWindow;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(T e) {
+        ensureOwnedArrays();
+        positions.put(e, -1 - pending.size());
+        pending.add(e);
+        size++;
+        mergeIfNeeded();
+    }
+
+    @Override
+    public void remove(Object o) {
+        Object item = find(o);
+        if (item == null) return;
+
+        ensureOwnedArrays();
+        int position = positions.remove(item);
+        if (position >= 0) {
+            items[position] = null;
+            removed++;
+        } else {
+            int index = -1 - position;
+            Object last = pending.remove(pending.size() - 1);
+            if (last != item) {
+                pending.set(index, last);
+                positions.put(last, position);
+            }
+        }
+        size--;
+        mergeIfNeeded();
+    }
+
+    @Override
+    public List<T> getItems() {
+        List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < slots; i++) {
+            if (items[i] != null) result.add(itemAt(i));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            result.add(itemAt(slots + i));
+        }
+        return result;
+    }
+
+    @Override
+    public List<T> getKClosestItems(Point p, int k) {
+        if (k <= 0) return new ArrayList<>();
+        if (k >= size) return getItems();
+
+        if (approximationWindow == 0 || 2 * approximationWindow >= slots) {
+            return collect(scan(p, k, 0, slots));
+        }
+
+        // Scan a window around the query position along the curve, widened
+        // so it always holds at least k slots
+        int window = Math.max(approximationWindow, (k + 1) / 2);
+        int position = lowerBound(hilbertKey(clamp(p.getXCoordinate(), minX, maxX), clamp(p.getYCoordinate(), minY, maxY)));
+        int from = Math.max(0, position - window);
+        int to = Math.min(slots, from + 2 * window);
+        from = Math.max(0, to - 2 * window);
+        TopKAccumulator closest = scan(p, k, from, to);
+        // Too many of the slots were empty
+        if (!closest.isFull()) closest = scan(p, k, 0, slots);
+        return collect(closest);
+    }
+
+    @Override
+    public void setItemsFromList(List<T> items) {
+        rebuild(items.toArray(), items.size());
+    }
+
+    @Override
+    public void replace(T old, T replacement) {
+        Integer position = positions.get(old);
+        if (position == null) return;
+
+        ensureOwnedArrays();
+        if (position >= 0) items[position] = replacement;
+        else pending.set(-1 - position, replacement);
+        positions.remove(old);
+        positions.put(replacement, position);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        ensureOwnedArrays();
+        for (int i = 0; i < slots; i++) {
+            if (items[i] != null) items[i] = operator.apply(itemAt(i));
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            pending.set(i, operator.apply(itemAt(slots + i)));
+        }
+        indexPositions();
+    }
+
+    @Override
+    public SpatialCollection<T> fork() {
+        shared = true;
+        return new HilbertSpatialCollection<>(this);
+    }
+
+    /**
+     * Runs every query in exact and in approximate mode and compares them
+     * @param queries the query points
+     * @param k the number of closest items asked for by each query
+     * @return the recall of the approximate mode and the mean latency of both modes
+     */
+    public ApproximationReport measureApproximation(List<Point> queries, int k) {
+        int window = approximationWindow;
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        long found = 0;
+        long expected = 0;
+
+        long start;
+        List<T> exact;
+        List<T> approximate;
+        Set<T> exactSet;
+        for (Point query : queries) {
+            approximationWindow = 0;
+            start = System.nanoTime();
+            exact = getKClosestItems(query, k);
+            exactNanos += System.nanoTime() - start;
+
+            approximationWindow = window;
+            start = System.nanoTime();
+            approximate = getKClosestItems(query, k);
+            approximateNanos += System.nanoTime() - start;
+
+            exactSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            exactSet.addAll(exact);
+            for (T item : approximate) {
+                if (exactSet.contains(item)) found++;
+            }
+            expected += exact.size();
+        }
+
+        int n = Math.max(1, queries.size());
+        return new ApproximationReport(
+            window,
+            expected == 0 ? 1 : (double) found / expected,
+            exactNanos / 1000.0 / n,
+            approximateNanos / 1000.0 / n);
+    }
+
+    /**
+     * Result of {@link #measureApproximation(List, int)}. Latencies are the
+     * mean time per query in microseconds.
+     */
+    public record ApproximationReport(int window, double recall, double exactMicros, double approximateMicros) {}
+
+    // Scans the slots from, to and every pending item
+    private TopKAccumulator scan(Point p, int k, int from, int to) {
+        TopKAccumulator closest = new TopKAccumulator(k);
+        long px = p.getXCoordinate();
+        long py = p.getYCoordinate();
+        long dx;
+        long dy;
+        for (int i = from; i < to; i++) {
+            if (items[i] == null) continue;
+
+            dx = xs[i] - px;
+            dy = ys[i] - py;
+            closest.offer(dx * dx + dy * dy, i);
+        }
+        Point location;
+        for (int i = 0; i < pending.size(); i++) {
+            location = ((Locatable) pending.get(i)).getLocation();
+            dx = location.getXCoordinate() - px;
+            dy = location.getYCoordinate() - py;
+            closest.offer(dx * dx + dy * dy, slots + i);
+        }
+        return closest;
+    }
+
+    private List<T> collect(TopKAccumulator closest) {
+        List<T> result = new ArrayList<>(closest.size());
+        for (int i = 0; i < closest.size(); i++) {
+            result.add(itemAt(closest.indexAt(i)));
+        }
+        return result;
+    }
+
+    // Indices from slots on are pending items
+    @SuppressWarnings("unchecked")
+    private T itemAt(int index) {
+        return (T) (index < slots ? items[index] : pending.get(index - slots));
+    }
+
+    // The item of the collection equal to o, the same instance if it is there
+    private Object find(Object o) {
+        if (positions.containsKey(o)) return o;
+
+        for (int i = 0; i < slots; i++) {
+            if (items[i] != null && items[i].equals(o)) return items[i];
+        }
+        for (Object item : pending) {
+            if (item.equals(o)) return item;
+        }
+        return null;
+    }
+
+    private void mergeIfNeeded() {
+        if (pending.size() > Math.max(MIN_BATCH, (int) Math.sqrt(slots))
+            || removed > Math.max(MIN_BATCH, slots / 4)) {
+            merge();
+        }
+    }
+
+    // Merges the pending items into the sorted arrays and drops the empty
+    // slots, in O(n) unless a pending item is out of the bounding box
+    private void merge() {
+        Object[] all = new Object[size];
+        int count = 0;
+        for (int i = 0; i < slots; i++) {
+            if (items[i] != null) all[count++] = items[i];
+        }
+        Point location;
+        boolean inBounds = count > 0;
+        for (Object item : pending) {
+            location = ((Locatable) item).getLocation();
+            inBounds &= location.getXCoordinate() >= minX && location.getXCoordinate() <= maxX
+                && location.getYCoordinate() >= minY && location.getYCoordinate() <= maxY;
+            all[count++] = item;
+        }
+        if (!inBounds) {
+            // The new items change the bounding box, so every key changes
+            rebuild(all, count);
+            return;
+        }
+
+        long[] added = new long[pending.size()];
+        for (int i = 0; i < added.length; i++) {
+            location = ((Locatable) pending.get(i)).getLocation();
+            added[i] = (hilbertKey(location.getXCoordinate(), location.getYCoordinate()) << 31) | i;
+        }
+        Arrays.sort(added);
+
+        Object[] mergedItems = new Object[Math.max(size, 8)];
+        long[] mergedKeys = new long[mergedItems.length];
+        int[] mergedXs = new int[mergedItems.length];
+        int[] mergedYs = new int[mergedItems.length];
+        int slot = 0;
+        int next = 0;
+        int index;
+        for (int i = 0; i < size; i++) {
+            while (slot < slots && items[slot] == null) slot++;
+            if (next < added.length && (slot == slots || (added[next] >>> 31) < keys[slot])) {
+                index = (int) (added[next] & Integer.MAX_VALUE);
+                location = ((Locatable) pending.get(index)).getLocation();
+                mergedItems[i] = pending.get(index);
+                mergedKeys[i] = added[next++] >>> 31;
+                mergedXs[i] = location.getXCoordinate();
+                mergedYs[i] = location.getYCoordinate();
+            } else {
+                mergedItems[i] = items[slot];
+                mergedKeys[i] = keys[slot];
+                mergedXs[i] = xs[slot];
+                mergedYs[i] = ys[slot++];
+            }
+        }
+        setSorted(mergedItems, mergedKeys, mergedXs, mergedYs, size);
+    }
+
+    private void rebuild(Object[] all, int count) {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+        Point location;
+        for (int i = 0; i < count; i++) {
+            location = ((Locatable) all[i]).getLocation();
+            minX = Math.min(minX, location.getXCoordinate());
+            minY = Math.min(minY, location.getYCoordinate());
+            maxX = Math.max(maxX, location.getXCoordinate());
+            maxY = Math.max(maxY, location.getYCoordinate());
+        }
+
+        shift = 0;
+        long extent = count == 0 ? 0 : Math.max((long) maxX - minX, (long) maxY - minY);
+        while ((extent >> shift) >= GRID_SIDE) shift++;
+
+        // Sort by key, packing key and original index in a single long.
+        // Keys use 2 * ORDER = 32 bits and indices at most 31.
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            location = ((Locatable) all[i]).getLocation();
+            packed[i] = (hilbertKey(location.getXCoordinate(), location.getYCoordinate()) << 31) | i;
+        }
+        Arrays.sort(packed);
+
+        int capacity = Math.max(count, 8);
+        Object[] sortedItems = new Object[capacity];
+        long[] sortedKeys = new long[capacity];
+        int[] sortedXs = new int[capacity];
+        int[] sortedYs = new int[capacity];
+        int index;
+        for (int i = 0; i < count; i++) {
+            index = (int) (packed[i] & Integer.MAX_VALUE);
+            location = ((Locatable) all[index]).getLocation();
+            sortedItems[i] = all[index];
+            sortedKeys[i] = packed[i] >>> 31;
+            sortedXs[i] = location.getXCoordinate();
+            sortedYs[i] = location.getYCoordinate();
+        }
+        setSorted(sortedItems, sortedKeys, sortedXs, sortedYs, count);
+    }
+
+    // Replaces the whole content with count sorted items and no pending one
+    private void setSorted(Object[] items, long[] keys, int[] xs, int[] ys, int count) {
+        this.items = items;
+        this.keys = keys;
+        this.xs = xs;
+        this.ys = ys;
+        slots = count;
+        removed = 0;
+        pending = new ArrayList<>();
+        size = count;
+        indexPositions();
+        shared = false;
+    }
+
+    private void indexPositions() {
+        positions = new IdentityHashMap<>(size);
+        for (int i = 0; i < slots; i++) {
+            if (items[i] != null) positions.put(items[i], i);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            positions.put(pending.get(i), -1 - i);
+        }
+    }
+
+    // Position of (x, y), which must lie in the bounding box, along the curve
+    private long hilbertKey(int x, int y) {
+        int hx = (int) (((long) x - minX) >> shift);
+        int hy = (int) (((long) y - minY) >> shift);
+
+        long key = 0;
+        int rx;
+        int ry;
+        int swap;
+        for (int s = GRID_SIDE / 2; s > 0; s /= 2) {
+            rx = (hx & s) > 0 ? 1 : 0;
+            ry = (hy & s) > 0 ? 1 : 0;
+            key += (long) s * s * ((3 * rx) ^ ry);
+
+            // Rotate the quadrant so the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    hx = s - 1 - hx;
+                    hy = s - 1 - hy;
+                }
+                swap = hx;
+                hx = hy;
+                hy = swap;
+            }
+        }
+        return key;
+    }
+
+    // First position whose key is >= key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = slots;
+        int mid;
+        while (low < high) {
+            mid = (low + high) >>> 1;
+            if (keys[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void ensureOwnedArrays() {
+        if (!shared) return;
+
+        items = items.clone();
+        keys = keys.clone();
+        xs = xs.clone();
+        ys = ys.clone();
+        pending = new ArrayList<>(pending);
+        positions = new IdentityHashMap<>(positions);
+        shared = false;
+    }
+}
@@ -0,0 +1,164 @@
+package vaccinesdistribution.Util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Two dimensional Fenwick tree (binary indexed tree) over a fixed set of
+ * points, used to sum values attached to those points over axis aligned
+ * rectangles.
+ *
+ * The outer tree is indexed by the rank of the x coordinate and every node
+ * holds an inner tree over the distinct y coordinates of the points it
+ * covers, so memory is O(n log n) for n points and both updates and range
+ * sums take O(log^2 n). The tree only stores the layout; the values live in
+ * arrays created with {@link #newValues()}, so several independent sums
+ * (e.g. one per expiration date) can share a single layout.
+ */
+public class PointFenwickTree {
+    // sorted distinct x coordinates
+    private final int[] xs;
+    // sorted distinct y coordinates covered by each node of the outer tree
+    private final int[][] ys;
+    // sorted distinct y coordinates of the points at each x coordinate
+    private final int[][] pointYs;
+    // start of each inner tree in a values array
+    private final int[] offsets;
+    private final int valuesSize;
+
+    public PointFenwickTree(List<Point> points) {
+        xs = points.stream().mapToInt(Point::getXCoordinate).sorted().distinct().toArray();
+        int m = xs.length;
+
+        int[] counts = new int[m + 1];
+        for (Point point : points) {
+            for (int i = rankOf(point.getXCoordinate()); i <= m; i += i & -i) {
+                counts[i]++;
+            }
+        }
+
+        ys = new int[m + 1][];
+        for (int i = 1; i <= m; i++) {
+            ys[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (Point point : points) {
+            for (int i = rankOf(point.getXCoordinate()); i <= m; i += i & -i) {
+                ys[i][counts[i]++] = point.getYCoordinate();
+            }
+        }
+
+        int[] pointCounts = new int[m];
+        for (Point point : points) {
+            pointCounts[rankOf(point.getXCoordinate()) - 1]++;
+        }
+        pointYs = new int[m][];
+        for (int i = 0; i < m; i++) {
+            pointYs[i] = new int[pointCounts[i]];
+            pointCounts[i] = 0;
+        }
+        int index;
+        for (Point point : points) {
+            index = rankOf(point.getXCoordinate()) - 1;
+            pointYs[index][pointCounts[index]++] = point.getYCoordinate();
+        }
+        for (int i = 0; i < m; i++) {
+            pointYs[i] = Arrays.stream(pointYs[i]).sorted().distinct().toArray();
+        }
+
+        offsets = new int[m + 1];
+        int size = 0;
+        for (int i = 1; i <= m; i++) {
+            ys[i] = Arrays.stream(ys[i]).sorted().distinct().toArray();
+            offsets[i] = size;
+            size += ys[i].length;
+        }
+        valuesSize = size;
+    }
+
+    /**
+     * Returns an empty values array laid out for this tree
+     * @return a new zeroed values array
+     */
+    public long[] newValues() {
+        return new long[valuesSize];
+    }
+
+    /**
+     * Returns whether (x, y) is one of the points this tree was built with
+     */
+    public boolean contains(int x, int y) {
+        int index = Arrays.binarySearch(xs, x);
+        return index >= 0 && Arrays.binarySearch(pointYs[index], y) >= 0;
+    }
+
+    /**
+     * Adds delta to the value of the given point
+     * @param values a values array created by this tree
+     * @param point one of the points this tree was built with
+     * @param delta the amount to add
+     * @throws IllegalArgumentException if the point is not part of the tree
+     */
+    public void add(long[] values, Point point, long delta) {
+        int rank = rankOf(point.getXCoordinate());
+        int y = point.getYCoordinate();
+        // Inner trees also cover the y coordinates of other columns
+        if (Arrays.binarySearch(pointYs[rank - 1], y) < 0) {
+            throw new IllegalArgumentException("Point not indexed: " + point);
+        }
+
+        int j;
+        for (int i = rank; i < offsets.length; i += i & -i) {
+            j = Arrays.binarySearch(ys[i], y) + 1;
+            for (; j <= ys[i].length; j += j & -j) {
+                values[offsets[i] + j - 1] += delta;
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the values of the points inside the rectangle,
+     * bounds included
+     * @param values a values array created by this tree
+     * @return the sum of the values in the rectangle
+     */
+    public long sum(long[] values, int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX || minY > maxY) return 0;
+
+        return prefix(values, maxX, maxY)
+                - prefix(values, minX - 1L, maxY)
+                - prefix(values, maxX, minY - 1L)
+                + prefix(values, minX - 1L, minY - 1L);
+    }
+
+    // Sum of the values of the points with x <= maxX and y <= maxY
+    private long prefix(long[] values, long maxX, long maxY) {
+        long total = 0;
+        int j;
+        for (int i = upperBound(xs, maxX); i > 0; i -= i & -i) {
+            for (j = upperBound(ys[i], maxY); j > 0; j -= j & -j) {
+                total += values[offsets[i] + j - 1];
+            }
+        }
+        return total;
+    }
+
+    private int rankOf(int x) {
+        int index = Arrays.binarySearch(xs, x);
+        if (index < 0) throw new IllegalArgumentException("Coordinate not indexed: " + x);
+        return index + 1;
+    }
+
+    // Number of elements of the sorted array that are <= key
+    private static int upperBound(int[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        int mid;
+        while (low < high) {
+            mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,16 @@
+package vaccinesdistribution.Util;
+
+class ScalarDistanceKernel implements DistanceKernel {
+    @Override
+    public void scan(int[] xs, int[] ys, int from, int to, int px, int py, TopKAccumulator closest) {
+        long dx;
+        long dy;
+        long distance;
+        for (int i = from; i < to; i++) {
+            dx = xs[i] - (long) px;
+            dy = ys[i] - (long) py;
+            distance = dx * dx + dy * dy;
+            if (distance < closest.threshold()) closest.offer(distance, i);
+        }
+    }
+}
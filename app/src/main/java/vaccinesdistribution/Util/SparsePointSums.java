@@ -0,0 +1,155 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values attached to points, summed over axis aligned rectangles, where the
+ * set of points holding a value changes over time.
+ *
+ * Points are indexed in {@link PointFenwickTree}s built only over points
+ * holding a value, so memory is O(k log k) for the k points with a non zero
+ * value rather than for every point that could hold one. Points that get a
+ * value while not indexed wait in a pending list; once it is full it
+ * becomes a new tree, and trees are merged while the last one is not at
+ * least twice as big as the new one (the logarithmic method). There are
+ * then O(log k) trees and every point is rebuilt into a tree O(log k)
+ * times, so adds take O(log^3 k) amortized and sums O(log^3 k).
+ */
+public class SparsePointSums {
+    // Size of the pending list, scanned by every sum
+    private static final int MAX_PENDING_POINTS = 64;
+
+    // From the biggest to the smallest, each at least twice the next one
+    private final List<Level> levels = new ArrayList<>();
+    private List<Point> pendingPoints = new ArrayList<>();
+    private List<Long> pendingDeltas = new ArrayList<>();
+    private long total;
+
+    /**
+     * Adds delta to the value of a point. Never compacts; see
+     * {@link #compactIfNeeded()}.
+     */
+    public void add(Point point, long delta) {
+        total += delta;
+        for (Level level : levels) {
+            if (level.tree.contains(point.getXCoordinate(), point.getYCoordinate())) {
+                level.tree.add(level.values, point, delta);
+                return;
+            }
+        }
+
+        pendingPoints.add(point);
+        pendingDeltas.add(delta);
+    }
+
+    /**
+     * Returns the sum of the values of the points inside the rectangle,
+     * bounds included
+     */
+    public long sum(int minX, int minY, int maxX, int maxY) {
+        long sum = 0;
+        for (Level level : levels) {
+            sum += level.tree.sum(level.values, minX, minY, maxX, maxY);
+        }
+        Point point;
+        for (int i = 0; i < pendingPoints.size(); i++) {
+            point = pendingPoints.get(i);
+            if (point.getXCoordinate() < minX || point.getXCoordinate() > maxX) continue;
+            if (point.getYCoordinate() < minY || point.getYCoordinate() > maxY) continue;
+            sum += pendingDeltas.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of all the values
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Indexes the pending points once there are too many for sum() to scan
+     * them cheaply, merging the smallest trees as needed
+     */
+    public void compactIfNeeded() {
+        if (pendingPoints.size() <= MAX_PENDING_POINTS) return;
+
+        Map<Long, Long> sums = new HashMap<>();
+        Map<Long, Point> keyed = new HashMap<>();
+        addPending(sums, keyed);
+        Level level = buildLevel(sums, keyed);
+        while (!levels.isEmpty() && levels.get(levels.size() - 1).points.size() <= 2 * level.points.size()) {
+            sums.clear();
+            keyed.clear();
+            addLevel(levels.remove(levels.size() - 1), sums, keyed);
+            addLevel(level, sums, keyed);
+            level = buildLevel(sums, keyed);
+        }
+        if (!level.points.isEmpty()) levels.add(level);
+    }
+
+    /**
+     * Rebuilds a single tree over the points that still hold a value,
+     * including the pending ones
+     */
+    public void compact() {
+        if (pendingPoints.isEmpty() && levels.size() <= 1) return;
+
+        Map<Long, Long> sums = new HashMap<>();
+        Map<Long, Point> keyed = new HashMap<>();
+        for (Level level : levels) {
+            addLevel(level, sums, keyed);
+        }
+        addPending(sums, keyed);
+        levels.clear();
+        Level level = buildLevel(sums, keyed);
+        if (!level.points.isEmpty()) levels.add(level);
+    }
+
+    // Empties the pending list into the values per packed coordinates
+    private void addPending(Map<Long, Long> sums, Map<Long, Point> keyed) {
+        long key;
+        for (int i = 0; i < pendingPoints.size(); i++) {
+            key = key(pendingPoints.get(i));
+            keyed.putIfAbsent(key, pendingPoints.get(i));
+            sums.merge(key, pendingDeltas.get(i), Long::sum);
+        }
+        pendingPoints = new ArrayList<>();
+        pendingDeltas = new ArrayList<>();
+    }
+
+    private static void addLevel(Level level, Map<Long, Long> sums, Map<Long, Point> keyed) {
+        long key;
+        for (Point point : level.points) {
+            key = key(point);
+            if (keyed.putIfAbsent(key, point) != null) continue;
+            sums.merge(key, level.tree.sum(level.values,
+                point.getXCoordinate(), point.getYCoordinate(),
+                point.getXCoordinate(), point.getYCoordinate()), Long::sum);
+        }
+    }
+
+    // Tree over the points of non zero value
+    private static Level buildLevel(Map<Long, Long> sums, Map<Long, Point> keyed) {
+        List<Point> points = new ArrayList<>(sums.size());
+        for (Map.Entry<Long, Long> entry : sums.entrySet()) {
+            if (entry.getValue() != 0) points.add(keyed.get(entry.getKey()));
+        }
+        PointFenwickTree tree = new PointFenwickTree(points);
+        long[] values = tree.newValues();
+        for (Point point : points) {
+            tree.add(values, point, sums.get(key(point)));
+        }
+        return new Level(tree, values, points);
+    }
+
+    private static long key(Point point) {
+        return ((long) point.getXCoordinate() << 32) | (point.getYCoordinate() & 0xFFFFFFFFL);
+    }
+
+    private record Level(PointFenwickTree tree, long[] values, List<Point> points) {}
+}
@@ -0,0 +1,132 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel scheduling events at integer ticks.
+ *
+ * Each level has 64 slots; a slot of level l spans 64^l ticks. An event is
+ * stored in the lowest level whose span covers its distance to the current
+ * tick and moved down a level (cascaded) when the clock enters the range of
+ * its slot, so scheduling is O(1) and advancing the clock costs O(1) per
+ * tick plus O(levels) per event. Events due in the same tick fire in the
+ * order they reach the lowest level.
+ */
+public class TimingWheel<E> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    /** Maximum distance, in ticks, at which an event can be scheduled */
+    public static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final List<List<Entry<E>>> slots;
+    private long currentTick;
+    private int size;
+    // true while the events of currentTick are being fired
+    private boolean firing;
+
+    public TimingWheel(long startTick) {
+        slots = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+        currentTick = startTick;
+        size = 0;
+        firing = false;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules an event. Events scheduled in the past, or at the current
+     * tick once it has been fired, fire in the next tick.
+     * @param tick the tick at which the event fires
+     * @param event the event
+     * @throws IllegalArgumentException if the tick is more than MAX_DELAY ticks away
+     */
+    public void schedule(long tick, E event) {
+        if (tick < currentTick || (tick == currentTick && !firing)) {
+            tick = firing ? currentTick : currentTick + 1;
+        }
+        if (tick - currentTick > MAX_DELAY) {
+            throw new IllegalArgumentException("Event scheduled too far in the future: " + tick);
+        }
+
+        place(new Entry<>(tick, event));
+        size++;
+    }
+
+    /**
+     * Advances the clock up to the given tick, included, handing every due
+     * event to the handler. The handler may schedule new events.
+     * @param tick the tick to advance to
+     * @param handler the handler of the fired events
+     */
+    public void advanceTo(long tick, Consumer<E> handler) {
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                return;
+            }
+            currentTick++;
+
+            // Cascade from the highest level whose slot boundary is crossed
+            int level = 0;
+            while (level + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+                level++;
+            }
+            for (; level > 0; level--) {
+                cascade(level);
+            }
+
+            fire(handler);
+        }
+    }
+
+    private void fire(Consumer<E> handler) {
+        List<Entry<E>> due = slots.get((int) (currentTick & SLOT_MASK));
+        firing = true;
+        try {
+            // Handlers may append events for the current tick to this slot
+            for (int i = 0; i < due.size(); i++) {
+                size--;
+                handler.accept(due.get(i).event());
+            }
+        } finally {
+            due.clear();
+            firing = false;
+        }
+    }
+
+    private void cascade(int level) {
+        int index = level * SLOTS + (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        List<Entry<E>> entries = slots.get(index);
+        if (entries.isEmpty()) return;
+
+        slots.set(index, new ArrayList<>());
+        for (Entry<E> entry : entries) {
+            place(entry);
+        }
+    }
+
+    private void place(Entry<E> entry) {
+        long delay = entry.tick() - currentTick;
+        int level = 0;
+        while (level + 1 < LEVELS && delay >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((entry.tick() >>> (SLOT_BITS * level)) & SLOT_MASK);
+        slots.get(level * SLOTS + slot).add(entry);
+    }
+
+    private record Entry<E>(long tick, E event) {}
+}
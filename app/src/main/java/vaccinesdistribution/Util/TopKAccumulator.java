@@ -0,0 +1,88 @@
+package vaccinesdistribution.Util;
+
+/**
+ * Keeps the k smallest squared distances seen so far together with the
+ * index of the item they belong to. Backed by a primitive max-heap, so the
+ * current k-th best distance, used to prune candidates, is read in O(1).
+ */
+class TopKAccumulator {
+    private final long[] distances;
+    private final int[] indices;
+    private int size;
+
+    TopKAccumulator(int k) {
+        this.distances = new long[k];
+        this.indices = new int[k];
+        this.size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == distances.length;
+    }
+
+    /**
+     * Returns the largest distance kept, or Long.MAX_VALUE while fewer than
+     * k distances have been offered
+     */
+    long threshold() {
+        return isFull() ? distances[0] : Long.MAX_VALUE;
+    }
+
+    void offer(long distance, int index) {
+        if (!isFull()) {
+            distances[size] = distance;
+            indices[size] = index;
+            siftUp(size++);
+            return;
+        }
+        if (distance >= distances[0]) return;
+
+        distances[0] = distance;
+        indices[0] = index;
+        siftDown(0);
+    }
+
+    void merge(TopKAccumulator other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.distances[i], other.indices[i]);
+        }
+    }
+
+    int indexAt(int position) {
+        return indices[position];
+    }
+
+    private void siftUp(int position) {
+        int parent;
+        while (position > 0) {
+            parent = (position - 1) >>> 1;
+            if (distances[parent] >= distances[position]) return;
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        int child;
+        while ((child = 2 * position + 1) < size) {
+            if (child + 1 < size && distances[child + 1] > distances[child]) child++;
+            if (distances[position] >= distances[child]) return;
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+
+        int index = indices[a];
+        indices[a] = indices[b];
+        indices[b] = index;
+    }
+}
@@ -0,0 +1,57 @@
+package vaccinesdistribution.Util;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD distance kernel built on the incubating Vector API. Only load it
+ * through {@link DistanceKernels}, which checks that the
+ * jdk.incubator.vector module is available.
+ */
+class VectorDistanceKernel implements DistanceKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void scan(int[] xs, int[] ys, int from, int to, int px, int py, TopKAccumulator closest) {
+        IntVector queryX = IntVector.broadcast(SPECIES, px);
+        IntVector queryY = IntVector.broadcast(SPECIES, py);
+        int[] laneDistances = new int[SPECIES.length()];
+
+        IntVector dx;
+        IntVector dy;
+        IntVector distances;
+        VectorMask<Integer> candidates;
+        long threshold;
+        int i = from;
+        int upperBound = from + SPECIES.loopBound(to - from);
+        for (; i < upperBound; i += SPECIES.length()) {
+            dx = IntVector.fromArray(SPECIES, xs, i).sub(queryX);
+            dy = IntVector.fromArray(SPECIES, ys, i).sub(queryY);
+            distances = dx.mul(dx).add(dy.mul(dy));
+
+            // Per lane pruning against the current k-th best distance
+            threshold = closest.threshold();
+            if (threshold <= Integer.MAX_VALUE) {
+                candidates = distances.compare(VectorOperators.LT, (int) threshold);
+                if (!candidates.anyTrue()) continue;
+            } else {
+                candidates = SPECIES.maskAll(true);
+            }
+
+            distances.intoArray(laneDistances, 0);
+            for (int lane = 0; lane < laneDistances.length; lane++) {
+                if (candidates.laneIsSet(lane)) closest.offer(laneDistances[lane], i + lane);
+            }
+        }
+
+        long ldx;
+        long ldy;
+        for (; i < to; i++) {
+            ldx = xs[i] - (long) px;
+            ldy = ys[i] - (long) py;
+            closest.offer(ldx * ldx + ldy * ldy, i);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.OrderPriority;
+import vaccinesdistribution.Model.Product;
+import vaccinesdistribution.Model.VaccineBatch;
+import vaccinesdistribution.Model.Warehouse;
+import vaccinesdistribution.Model.WarehouseIdentifier;
+import vaccinesdistribution.Util.Point;
+
+class DistributorTwoPhaseTest {
+    private static final int SEEDS = 50;
+    private static final int ORDERS = 80;
+
+    @Test
+    void twoPhaseDispatchMatchesSerialDispatchUnderScarcity() {
+        int rejected = 0;
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Distributor distributor = scarceDistributor(new Random(seed));
+            Distributor serial = distributor.fork();
+            Distributor twoPhase = distributor.fork();
+            twoPhase.setTwoPhaseDispatch(true);
+
+            serial.dispatchOrders();
+            twoPhase.dispatchOrders();
+
+            List<Integer> serialRejected = rejectedOrders(serial);
+            assertEquals(serialRejected, rejectedOrders(twoPhase), "rejected orders, seed " + seed);
+            assertEquals(stockByWarehouse(serial), stockByWarehouse(twoPhase), "warehouse stock, seed " + seed);
+            rejected += serialRejected.size();
+        }
+        assertTrue(rejected > 0, "no order was rejected, stock is not scarce");
+    }
+
+    // Warehouses far apart from each other, so no two are at the same
+    // distance from an order, and orders asking for about twice the stock
+    private static Distributor scarceDistributor(Random random) {
+        List<Warehouse> warehouses = new ArrayList<>();
+        Warehouse warehouse;
+        for (int i = 0; i < 200; i++) {
+            warehouse = new Warehouse(new WarehouseIdentifier("w" + i, randomPoint(random)));
+            for (int j = 0; j < 1 + random.nextInt(3); j++) {
+                warehouse.registerPerishableBatch(new VaccineBatch(1 + random.nextInt(30), 5 + random.nextInt(5)));
+            }
+            warehouses.add(warehouse);
+        }
+
+        Distributor distributor = new Distributor(new DistributorConfiguration(() -> warehouses));
+        OrderPriority[] priorities = OrderPriority.values();
+        int maxQuantity = distributor.getAvailableBatches() / (ORDERS / 4);
+        for (int i = 0; i < ORDERS; i++) {
+            distributor.createOrder(
+                Product.DEFAULT,
+                1 + random.nextInt(maxQuantity),
+                randomPoint(random),
+                priorities[random.nextInt(priorities.length)]);
+        }
+        return distributor;
+    }
+
+    private static Point randomPoint(Random random) {
+        return new Point(random.nextInt(1_000_000), random.nextInt(1_000_000));
+    }
+
+    private static List<Integer> rejectedOrders(Distributor distributor) {
+        List<Integer> rejected = new ArrayList<>();
+        for (Order order : distributor.getCurrentDayOrders()) {
+            if (order.isRejected()) rejected.add(order.getId());
+        }
+        return rejected;
+    }
+
+    private static Map<Integer, Integer> stockByWarehouse(Distributor distributor) {
+        Map<Integer, Integer> stock = new TreeMap<>();
+        for (Warehouse warehouse : distributor.getWarehouses()) {
+            stock.put(warehouse.getIdentifier().getId(), warehouse.getAvailableBatches());
+        }
+        return stock;
+    }
+}
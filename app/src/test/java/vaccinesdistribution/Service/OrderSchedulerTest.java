@@ -0,0 +1,175 @@
+package vaccinesdistribution.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import vaccinesdistribution.Model.Order;
+import vaccinesdistribution.Model.OrderPriority;
+import vaccinesdistribution.Model.Product;
+import vaccinesdistribution.Util.Point;
+
+class OrderSchedulerTest {
+    private static final int SEEDS = 20;
+    private static final OrderPriority[] PRIORITIES = OrderPriority.values();
+
+    private static final Comparator<Order> EARLIEST_DEADLINE = Comparator
+        .comparingLong(Order::getDeadline)
+        .thenComparingInt(order -> order.getPriority().ordinal())
+        .thenComparingInt(Order::getId);
+
+    @Test
+    void ordersAreServedEarliestDeadlineFirst() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            OrderScheduler scheduler = new OrderScheduler(Integer.MAX_VALUE);
+            List<Order> pending = new ArrayList<>();
+            Order expected;
+            for (int i = 0; i < 2000; i++) {
+                if (pending.isEmpty() || random.nextInt(3) > 0) {
+                    expected = randomOrder(random);
+                    scheduler.add(expected);
+                    pending.add(expected);
+                    continue;
+                }
+
+                expected = pending.stream().min(EARLIEST_DEADLINE).get();
+                pending.remove(expected);
+                assertSame(expected, scheduler.peek(), "peek, seed " + seed);
+                assertSame(expected, scheduler.poll(), "poll, seed " + seed);
+                assertEquals(pending.size(), scheduler.size(), "size, seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void ordersAreServedLikeTheBruteForceScheduler() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            int limit = 1 + random.nextInt(4);
+            OrderScheduler scheduler = new OrderScheduler(limit);
+            List<Order> pending = new ArrayList<>();
+            int[] skips = new int[PRIORITIES.length];
+            Order expected;
+            for (int i = 0; i < 2000; i++) {
+                if (pending.isEmpty() || random.nextBoolean()) {
+                    expected = randomOrder(random);
+                    scheduler.add(expected);
+                    pending.add(expected);
+                    continue;
+                }
+
+                expected = bruteForcePoll(pending, skips, limit);
+                assertSame(expected, scheduler.poll(), "poll, seed " + seed);
+            }
+            while (!pending.isEmpty()) {
+                assertSame(bruteForcePoll(pending, skips, limit), scheduler.poll(), "draining, seed " + seed);
+            }
+            assertNull(scheduler.poll());
+        }
+    }
+
+    @Test
+    void starvedLaneIsServedAfterTheLimit() {
+        OrderScheduler scheduler = new OrderScheduler(2);
+        Order routine = order(OrderPriority.ROUTINE, 1000);
+        scheduler.add(routine);
+        List<Order> urgent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            urgent.add(order(OrderPriority.URGENT, i));
+            scheduler.add(urgent.get(i));
+        }
+
+        assertSame(urgent.get(0), scheduler.poll());
+        assertSame(urgent.get(1), scheduler.poll());
+        assertSame(routine, scheduler.poll());
+        assertSame(urgent.get(2), scheduler.poll());
+        assertEquals(0, scheduler.size(OrderPriority.ROUTINE));
+        assertEquals(2, scheduler.size(OrderPriority.URGENT));
+    }
+
+    @Test
+    void removedOrdersAreNotServed() {
+        Random random = new Random(0);
+        OrderScheduler scheduler = new OrderScheduler();
+        List<Order> pending = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            pending.add(randomOrder(random));
+        }
+        scheduler.addAll(pending);
+
+        Order order;
+        for (Iterator<Order> iterator = scheduler.iterator(); iterator.hasNext();) {
+            order = iterator.next();
+            if (order.getId() % 3 == 0) {
+                iterator.remove();
+                pending.remove(order);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            order = pending.remove(random.nextInt(pending.size()));
+            assertTrue(scheduler.remove(order));
+            assertFalse(scheduler.remove(order));
+        }
+
+        assertEquals(pending.size(), scheduler.size());
+        int laneSizes = 0;
+        for (OrderPriority priority : PRIORITIES) {
+            laneSizes += scheduler.size(priority);
+        }
+        assertEquals(pending.size(), laneSizes);
+        List<Order> served = new ArrayList<>();
+        while (!scheduler.isEmpty()) {
+            served.add(scheduler.poll());
+        }
+        served.sort(Comparator.comparingInt(Order::getId));
+        pending.sort(Comparator.comparingInt(Order::getId));
+        assertEquals(pending, served);
+    }
+
+    // Serves the most starved lane past the limit, the highest priority one
+    // on ties, else the earliest deadline
+    private static Order bruteForcePoll(List<Order> pending, int[] skips, int limit) {
+        OrderPriority starved = null;
+        for (OrderPriority priority : PRIORITIES) {
+            if (!hasOrders(pending, priority) || skips[priority.ordinal()] < limit) continue;
+            if (starved == null || skips[priority.ordinal()] > skips[starved.ordinal()]) starved = priority;
+        }
+        Order next = null;
+        for (Order order : pending) {
+            if (starved != null && order.getPriority() != starved) continue;
+            if (next == null || EARLIEST_DEADLINE.compare(order, next) < 0) next = order;
+        }
+
+        pending.remove(next);
+        for (OrderPriority priority : PRIORITIES) {
+            if (priority == next.getPriority()) skips[priority.ordinal()] = 0;
+            else if (hasOrders(pending, priority)) skips[priority.ordinal()]++;
+        }
+        return next;
+    }
+
+    private static boolean hasOrders(List<Order> pending, OrderPriority priority) {
+        for (Order order : pending) {
+            if (order.getPriority() == priority) return true;
+        }
+        return false;
+    }
+
+    private static Order randomOrder(Random random) {
+        // Few distinct deadlines, so ties between lanes are common
+        return order(PRIORITIES[random.nextInt(PRIORITIES.length)], random.nextInt(50));
+    }
+
+    private static Order order(OrderPriority priority, long deadline) {
+        Order order = new Order(Product.DEFAULT, 1, new Point(0, 0));
+        order.setPriority(priority);
+        order.setDeadline(deadline);
+        return order;
+    }
+}
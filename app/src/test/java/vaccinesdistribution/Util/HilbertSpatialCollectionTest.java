@@ -0,0 +1,157 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import vaccinesdistribution.Interface.Locatable;
+import vaccinesdistribution.Interface.SpatialCollection;
+
+class HilbertSpatialCollectionTest {
+    private static final int SEEDS = 10;
+
+    @Test
+    void exactClosestItemsMatchBruteForceAfterAddsAndRemoves() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            HilbertSpatialCollection<Item> collection = new HilbertSpatialCollection<>();
+            List<Item> items = new ArrayList<>();
+            applyRandomChanges(collection, items, random, 3000);
+            for (int i = 0; i < 50; i++) {
+                assertClosestItems(collection, items, randomPoint(random), 1 + random.nextInt(20), "seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void windowedClosestItemsAreLiveAndDistinct() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            HilbertSpatialCollection<Item> collection = new HilbertSpatialCollection<>(16);
+            List<Item> items = new ArrayList<>();
+            applyRandomChanges(collection, items, random, 3000);
+
+            Set<Item> live = identitySet(items);
+            Set<Item> found;
+            List<Item> closest;
+            int k;
+            for (int i = 0; i < 50; i++) {
+                k = 1 + random.nextInt(40);
+                closest = collection.getKClosestItems(randomPoint(random), k);
+                found = identitySet(closest);
+                assertEquals(Math.min(k, items.size()), found.size(), "distinct items, seed " + seed);
+                assertTrue(live.containsAll(found), "removed item returned, seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void windowedQueriesFindMostOfTheClosestItems() {
+        Random random = new Random(1);
+        HilbertSpatialCollection<Item> collection = new HilbertSpatialCollection<>(256);
+        List<Item> items = new ArrayList<>();
+        applyRandomChanges(collection, items, random, 20000);
+        List<Point> queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            queries.add(randomPoint(random));
+        }
+
+        HilbertSpatialCollection.ApproximationReport report = collection.measureApproximation(queries, 10);
+        assertTrue(report.recall() > 0.8, "recall " + report.recall());
+    }
+
+    @Test
+    void forksDoNotSeeEachOtherChanges() {
+        Random random = new Random(2);
+        HilbertSpatialCollection<Item> collection = new HilbertSpatialCollection<>();
+        List<Item> items = new ArrayList<>();
+        applyRandomChanges(collection, items, random, 500);
+
+        SpatialCollection<Item> fork = collection.fork();
+        List<Item> forkItems = new ArrayList<>(items);
+        applyRandomChanges(collection, items, random, 500);
+        applyRandomChanges(fork, forkItems, random, 500);
+
+        for (int i = 0; i < 20; i++) {
+            assertClosestItems(collection, items, randomPoint(random), 10, "collection");
+            assertClosestItems(fork, forkItems, randomPoint(random), 10, "fork");
+        }
+    }
+
+    // Adds, removes and replaces items, mirroring the changes in the list.
+    // Some items fall outside the area seen so far, which changes the
+    // bounding box of the curve.
+    private static void applyRandomChanges(SpatialCollection<Item> collection, List<Item> items, Random random, int changes) {
+        Item item;
+        int index;
+        for (int i = 0; i < changes; i++) {
+            if (items.isEmpty() || random.nextInt(5) < 3) {
+                item = new Item(random.nextInt(20) == 0 ? farPoint(random) : randomPoint(random));
+                collection.add(item);
+                items.add(item);
+            } else if (random.nextInt(4) > 0) {
+                index = random.nextInt(items.size());
+                collection.remove(items.get(index));
+                items.set(index, items.get(items.size() - 1));
+                items.remove(items.size() - 1);
+            } else {
+                index = random.nextInt(items.size());
+                item = new Item(items.get(index).getLocation());
+                collection.replace(items.get(index), item);
+                items.set(index, item);
+            }
+        }
+    }
+
+    private static void assertClosestItems(SpatialCollection<Item> collection, List<Item> items, Point query, int k, String message) {
+        List<Item> closest = collection.getKClosestItems(query, k);
+        assertTrue(identitySet(items).containsAll(closest), "removed item returned, " + message);
+        assertEquals(sortedDistances(items, query, k), sortedDistances(closest, query, k), "distances, " + message);
+    }
+
+    private static List<Long> sortedDistances(List<Item> items, Point query, int k) {
+        List<Long> distances = new ArrayList<>(items.size());
+        long dx;
+        long dy;
+        for (Item item : items) {
+            dx = (long) item.getLocation().getXCoordinate() - query.getXCoordinate();
+            dy = (long) item.getLocation().getYCoordinate() - query.getYCoordinate();
+            distances.add(dx * dx + dy * dy);
+        }
+        Collections.sort(distances);
+        return distances.subList(0, Math.min(k, distances.size()));
+    }
+
+    private static Set<Item> identitySet(List<Item> items) {
+        Set<Item> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(items);
+        return set;
+    }
+
+    private static Point randomPoint(Random random) {
+        return new Point(random.nextInt(100_000), random.nextInt(100_000));
+    }
+
+    private static Point farPoint(Random random) {
+        return new Point(random.nextInt(2_000_000) - 1_000_000, random.nextInt(2_000_000) - 1_000_000);
+    }
+
+    private static class Item implements Locatable {
+        private final Point location;
+
+        private Item(Point location) {
+            this.location = location;
+        }
+
+        @Override
+        public Point getLocation() {
+            return location;
+        }
+    }
+}
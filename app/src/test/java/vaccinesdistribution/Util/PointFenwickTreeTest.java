@@ -0,0 +1,91 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointFenwickTreeTest {
+    private static final int SEEDS = 20;
+
+    @Test
+    void rectangleSumsMatchBruteForce() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            // Few distinct coordinates, so points share rows and columns
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                points.add(randomPoint(random, 40));
+            }
+            PointFenwickTree tree = new PointFenwickTree(points);
+            long[] values = tree.newValues();
+            long[] expected = new long[points.size()];
+
+            int index;
+            long delta;
+            for (int i = 0; i < 1000; i++) {
+                index = random.nextInt(points.size());
+                delta = random.nextInt(201) - 100;
+                tree.add(values, points.get(index), delta);
+                expected[index] += delta;
+            }
+
+            int minX;
+            int minY;
+            int maxX;
+            int maxY;
+            for (int i = 0; i < 500; i++) {
+                minX = random.nextInt(50) - 25;
+                minY = random.nextInt(50) - 25;
+                maxX = minX + random.nextInt(30) - 5;
+                maxY = minY + random.nextInt(30) - 5;
+                assertEquals(
+                    bruteForceSum(points, expected, minX, minY, maxX, maxY),
+                    tree.sum(values, minX, minY, maxX, maxY),
+                    "sum over [" + minX + ", " + maxX + "] x [" + minY + ", " + maxY + "], seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void valuesArraysAreIndependent() {
+        List<Point> points = List.of(new Point(0, 0), new Point(1, 2), new Point(5, -3));
+        PointFenwickTree tree = new PointFenwickTree(points);
+        long[] first = tree.newValues();
+        long[] second = tree.newValues();
+
+        tree.add(first, new Point(1, 2), 7);
+        tree.add(second, new Point(5, -3), 4);
+
+        assertEquals(7L, tree.sum(first, -10, -10, 10, 10));
+        assertEquals(4L, tree.sum(second, -10, -10, 10, 10));
+    }
+
+    @Test
+    void onlyIndexedPointsCanHoldValues() {
+        PointFenwickTree tree = new PointFenwickTree(List.of(new Point(0, 0), new Point(1, 2)));
+
+        assertTrue(tree.contains(1, 2));
+        assertFalse(tree.contains(1, 0));
+        assertFalse(tree.contains(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> tree.add(tree.newValues(), new Point(1, 0), 1));
+    }
+
+    private static long bruteForceSum(List<Point> points, long[] values, int minX, int minY, int maxX, int maxY) {
+        long sum = 0;
+        Point point;
+        for (int i = 0; i < points.size(); i++) {
+            point = points.get(i);
+            if (point.getXCoordinate() < minX || point.getXCoordinate() > maxX) continue;
+            if (point.getYCoordinate() < minY || point.getYCoordinate() > maxY) continue;
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    static Point randomPoint(Random random, int side) {
+        return new Point(random.nextInt(side) - side / 2, random.nextInt(side) - side / 2);
+    }
+}
@@ -0,0 +1,88 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparsePointSumsTest {
+    private static final int SEEDS = 20;
+
+    @Test
+    void sumsMatchBruteForceWhilePointsComeAndGo() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            SparsePointSums sums = new SparsePointSums();
+            // Point does not override hashCode, so values are kept by
+            // packed coordinates
+            Map<Long, Long> expected = new HashMap<>();
+            List<Point> points = new ArrayList<>();
+
+            Point point;
+            long delta;
+            for (int i = 0; i < 3000; i++) {
+                if (points.isEmpty() || random.nextInt(3) == 0) {
+                    point = PointFenwickTreeTest.randomPoint(random, 200);
+                    points.add(point);
+                } else {
+                    point = points.get(random.nextInt(points.size()));
+                }
+                // Values often drop back to zero, so points leave the trees
+                // when they are rebuilt
+                delta = random.nextBoolean() ? -expected.getOrDefault(key(point), 0L) : random.nextInt(100) + 1;
+                sums.add(point, delta);
+                expected.merge(key(point), delta, Long::sum);
+
+                // Pending points, several trees and a single tree
+                if (random.nextInt(20) == 0) sums.compactIfNeeded();
+                if (random.nextInt(500) == 0) sums.compact();
+                if (i % 10 == 0) assertSums(sums, expected, random, seed);
+            }
+            sums.compact();
+            assertSums(sums, expected, random, seed);
+        }
+    }
+
+    @Test
+    void pendingPointsAreSummedBeforeCompaction() {
+        SparsePointSums sums = new SparsePointSums();
+        sums.add(new Point(1, 1), 3);
+        sums.add(new Point(1, 1), 4);
+        sums.add(new Point(-2, 5), 10);
+
+        assertEquals(7L, sums.sum(0, 0, 1, 1));
+        assertEquals(17L, sums.sum(-2, 0, 1, 5));
+        assertEquals(17L, sums.getTotal());
+    }
+
+    private static void assertSums(SparsePointSums sums, Map<Long, Long> expected, Random random, int seed) {
+        long total = 0;
+        for (long value : expected.values()) {
+            total += value;
+        }
+        assertEquals(total, sums.getTotal(), "total, seed " + seed);
+
+        int minX = random.nextInt(200) - 100;
+        int minY = random.nextInt(200) - 100;
+        int maxX = minX + random.nextInt(100);
+        int maxY = minY + random.nextInt(100);
+        long sum = 0;
+        int x;
+        int y;
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            x = (int) (entry.getKey() >> 32);
+            y = (int) (long) entry.getKey();
+            if (x < minX || x > maxX || y < minY || y > maxY) continue;
+            sum += entry.getValue();
+        }
+        assertEquals(sum, sums.sum(minX, minY, maxX, maxY), "sum, seed " + seed);
+    }
+
+    private static long key(Point point) {
+        return ((long) point.getXCoordinate() << 32) | (point.getYCoordinate() & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,86 @@
+package vaccinesdistribution.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private static final int SEEDS = 20;
+
+    @Test
+    void eventsFireAtTheirTickAcrossLevels() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            assertEventsFireAtTheirTick(new Random(seed), "seed " + seed);
+        }
+    }
+
+    @Test
+    void eventsCrossingLevelBoundariesAreCascaded() {
+        TimingWheel<Long> wheel = new TimingWheel<>(63);
+        long[] ticks = {64, 65, 127, 128, 4095, 4096, 4097, 64 * 64 * 64, 64 * 64 * 64 + 63};
+        for (long tick : ticks) {
+            wheel.schedule(tick, tick);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (int i = 0; i < ticks.length; i++) {
+            wheel.advanceTo(ticks[i] - 1, fired::add);
+            assertEquals(i, fired.size(), "fired before " + ticks[i]);
+            wheel.advanceTo(ticks[i], fired::add);
+            assertEquals(ticks[i], fired.get(i).longValue(), "fired at " + ticks[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void eventsAtTheCurrentTickFireNextTickUnlessItIsFiring() {
+        TimingWheel<String> wheel = new TimingWheel<>(100);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(100, "current");
+        wheel.schedule(50, "past");
+        wheel.schedule(101, "next");
+
+        wheel.advanceTo(101, event -> {
+            fired.add(event + "@" + wheel.getCurrentTick());
+            // Scheduled while the tick fires, so it fires in the same tick
+            if (event.equals("next")) wheel.schedule(101, "chained");
+        });
+        wheel.advanceTo(102, event -> fired.add(event + "@" + wheel.getCurrentTick()));
+
+        assertEquals(List.of("current@101", "past@101", "next@101", "chained@101"), fired);
+    }
+
+    @Test
+    void eventsTooFarAwayAreRejected() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.schedule(TimingWheel.MAX_DELAY, "last");
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(TimingWheel.MAX_DELAY + 1, "too far"));
+        assertEquals(1, wheel.size());
+    }
+
+    private static void assertEventsFireAtTheirTick(Random random, String message) {
+        long start = random.nextInt(1 << 20);
+        TimingWheel<Long> wheel = new TimingWheel<>(start);
+        List<Long> scheduled = new ArrayList<>();
+        long tick;
+        for (int i = 0; i < 2000; i++) {
+            // Delays within every level, including the last one
+            tick = start + 1 + (long) (random.nextDouble() * random.nextDouble() * TimingWheel.MAX_DELAY);
+            wheel.schedule(tick, tick);
+            scheduled.add(tick);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        while (wheel.size() > 0) {
+            wheel.advanceTo(wheel.getCurrentTick() + 1 + random.nextInt(100_000), event -> {
+                assertEquals(event.longValue(), wheel.getCurrentTick(), "fired at the wrong tick, " + message);
+                fired.add(event);
+            });
+        }
+        scheduled.sort(null);
+        assertEquals(scheduled, fired, "fired events, " + message);
+    }
+}